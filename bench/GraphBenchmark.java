@@ -0,0 +1,150 @@
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Micro-benchmarks for every stage of a run over the {@link SourceGenerator} shapes: parsing,
+ * the bare AST walk, each edge rule on its own (walk included), the full analysis and JSON
+ * output. Each benchmark is warmed up, then timed over fixed-length iterations; the report
+ * gives throughput, time per operation and the bytes allocated per operation by the
+ * benchmark thread.
+ *
+ * <pre>
+ * java -cp ... GraphBenchmark [--shape NAME]... [--size N]... [--bench NAME]...
+ *                             [--warmup N] [--iterations N] [--time MS]
+ * </pre>
+ */
+class GraphBenchmark {
+    /** Keeps results reachable so the JIT cannot drop the measured work. */
+    static volatile long sink;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final JavaParser parser = new JavaParser(new ParserConfiguration());
+    private int warmup = 3;
+    private int iterations = 5;
+    private long iterationNanos = 1_000_000_000L;
+
+    public static void main(String[] args) throws IOException {
+        GraphBenchmark benchmark = new GraphBenchmark();
+        List<SourceGenerator> shapes = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        Set<String> selected = new HashSet<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--shape": shapes.add(SourceGenerator.valueOf(args[++i].toUpperCase(Locale.ROOT))); break;
+                case "--size": sizes.add(Integer.parseInt(args[++i])); break;
+                case "--bench": selected.add(args[++i]); break;
+                case "--warmup": benchmark.warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": benchmark.iterations = Integer.parseInt(args[++i]); break;
+                case "--time": benchmark.iterationNanos = Long.parseLong(args[++i]) * 1_000_000L; break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if (shapes.isEmpty()) shapes.addAll(Arrays.asList(SourceGenerator.values()));
+        if (sizes.isEmpty()) sizes.addAll(Arrays.asList(100, 1000));
+
+        System.out.printf("%-13s %6s %7s  %-19s %12s %12s %14s %10s%n",
+                "shape", "size", "lines", "benchmark", "ops/s", "ms/op", "alloc B/op", "alloc MB/s");
+        for (SourceGenerator shape : shapes) {
+            for (int size : sizes) {
+                benchmark.run(shape, size, selected);
+            }
+        }
+    }
+
+    private void run(SourceGenerator shape, int size, Set<String> selected) {
+        byte[] source = shape.generate(size).getBytes(StandardCharsets.UTF_8);
+        CompilationUnit cu = ParserPool.parse(parser, source);
+        CompactGraph graph = new GraphAnalyzer().analyze(cu);
+        int lines = cu.getEnd().get().line;
+
+        Map<String, Runnable> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("parse", () -> sink += ParserPool.parse(parser, source).getTypes().size());
+        benchmarks.put("walk", () -> sink += new GraphAnalyzer(Collections::emptyList).analyze(cu).edgeCount());
+        List<EdgeRule> rules = GraphAnalyzer.defaultRules();
+        for (int i = 0; i < rules.size(); i++) {
+            int rule = i;
+            benchmarks.put("rule:" + rules.get(i).name(), () -> sink += new GraphAnalyzer(
+                    () -> Collections.singletonList(GraphAnalyzer.defaultRules().get(rule))).analyze(cu).edgeCount());
+        }
+        benchmarks.put("analyze", () -> sink += new GraphAnalyzer().analyze(cu).edgeCount());
+        benchmarks.put("analyze-parallel", () -> sink += new GraphAnalyzer(false, true, false).analyze(cu).edgeCount());
+        benchmarks.put("json", () -> {
+            try {
+                new GraphJsonWriter(Writer.nullWriter(), true).write(graph);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        for (Map.Entry<String, Runnable> benchmark : benchmarks.entrySet()) {
+            if (!selected.isEmpty() && !selected.contains(benchmark.getKey())) continue;
+            Result result = measure(benchmark.getValue());
+            System.out.printf("%-13s %6d %7d  %-19s %12.1f %12.3f %14d %10.1f%n",
+                    shape.name().toLowerCase(Locale.ROOT), size, lines, benchmark.getKey(),
+                    result.opsPerSecond(), result.millisPerOp(), result.bytesPerOp(), result.allocationRate());
+        }
+    }
+
+    private Result measure(Runnable operation) {
+        for (int i = 0; i < warmup; i++) {
+            iteration(operation);
+        }
+        Result total = new Result();
+        for (int i = 0; i < iterations; i++) {
+            Result result = iteration(operation);
+            total.ops += result.ops;
+            total.nanos += result.nanos;
+            total.bytes += result.bytes;
+        }
+        return total;
+    }
+
+    private Result iteration(Runnable operation) {
+        long thread = Thread.currentThread().getId();
+        Result result = new Result();
+        long bytesBefore = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            operation.run();
+            result.ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        result.nanos = elapsed;
+        result.bytes = THREADS.getThreadAllocatedBytes(thread) - bytesBefore;
+        return result;
+    }
+
+    private static final class Result {
+        long ops;
+        long nanos;
+        long bytes;
+
+        double opsPerSecond() {
+            return ops * 1e9 / nanos;
+        }
+
+        double millisPerOp() {
+            return nanos / 1e6 / ops;
+        }
+
+        long bytesPerOp() {
+            return bytes / ops;
+        }
+
+        double allocationRate() {
+            return bytes / 1048576.0 / (nanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Generates synthetic, deterministic Java sources that stress one dimension of the analysis
+ * each. {@code size} scales the shape roughly linearly in source lines.
+ */
+enum SourceGenerator {
+    /** One method with {@code size} statements reusing a handful of locals. */
+    LONG_METHOD {
+        @Override
+        void body(StringBuilder out, int size) {
+            out.append("    int run(int p, int q) {\n        int a = p;\n        int b = q;\n        int c = 0;\n");
+            for (int s = 0; s < size; s++) {
+                switch (s % 6) {
+                    case 0: out.append("        a = a + b;\n"); break;
+                    case 1: out.append("        if (a > ").append(s).append(") {\n            b = a - c;\n        } else {\n            c = b;\n        }\n"); break;
+                    case 2: out.append("        for (int i = 0; i < b; i++) {\n            c = c + i;\n        }\n"); break;
+                    case 3: out.append("        c = helper(a, b, c);\n"); break;
+                    case 4: out.append("        int v").append(s).append(" = a * c;\n"); break;
+                    default: out.append("        b = b - a + value;\n"); break;
+                }
+            }
+            out.append("        return a + b + c;\n    }\n");
+            helper(out);
+        }
+    },
+    /** One method whose if/for/while/try blocks are nested {@code size} levels deep. */
+    DEEP_NESTING {
+        @Override
+        void body(StringBuilder out, int size) {
+            out.append("    int run(int p) {\n        int a = p;\n");
+            StringBuilder indent = new StringBuilder("        ");
+            for (int d = 0; d < size; d++) {
+                switch (d % 4) {
+                    case 0: out.append(indent).append("if (a > ").append(d).append(") {\n"); break;
+                    case 1: out.append(indent).append("for (int i").append(d).append(" = 0; i").append(d).append(" < a; i").append(d).append("++) {\n"); break;
+                    case 2: out.append(indent).append("while (a < ").append(d * 7).append(") {\n"); break;
+                    default: out.append(indent).append("try {\n"); break;
+                }
+                indent.append("    ");
+                out.append(indent).append("a = a + ").append(d).append(";\n");
+            }
+            for (int d = size - 1; d >= 0; d--) {
+                indent.setLength(indent.length() - 4);
+                out.append(indent).append(d % 4 == 3 ? "} catch (RuntimeException e) {\n" + indent + "    a = 0;\n" + indent + "}\n" : "}\n");
+            }
+            out.append("        return a;\n    }\n");
+        }
+    },
+    /** {@code size} small methods that call their neighbour. */
+    MANY_METHODS {
+        @Override
+        void body(StringBuilder out, int size) {
+            for (int m = 0; m < size; m++) {
+                out.append("    int m").append(m).append("(int x) {\n")
+                        .append("        int y = x + value;\n")
+                        .append("        if (y > ").append(m).append(") {\n            y = m").append((m + 1) % size).append("(y - 1);\n        }\n")
+                        .append("        return y;\n    }\n");
+            }
+        }
+    },
+    /** {@code size} call sites with many arguments, each preceded by assignments to its arguments. */
+    CALL_HEAVY {
+        @Override
+        void body(StringBuilder out, int size) {
+            out.append("    int run(int a, int b, int c, int d, int e, int f) {\n");
+            for (int s = 0; s < size; s++) {
+                String var = String.valueOf((char) ('a' + s % 6));
+                out.append("        ").append(var).append(" = ").append(var).append(" + ").append(s).append(";\n");
+                out.append("        a = wide(a, b, c, d, e, f, helper(b, c, d), value);\n");
+            }
+            out.append("        return a;\n    }\n");
+            out.append("    int wide(int a, int b, int c, int d, int e, int f, int g, int h) {\n        return a + b + c + d + e + f + g + h;\n    }\n");
+            helper(out);
+        }
+    },
+    /** {@code size} classes with fields and constructors, instantiated and mutated by one driver. */
+    MANY_CLASSES {
+        @Override
+        void body(StringBuilder out, int size) {
+            out.append("    int run(int p) {\n        int total = p;\n");
+            for (int k = 0; k < size; k++) {
+                out.append("        Node").append(k).append(" n").append(k).append(" = new Node").append(k).append("(total);\n")
+                        .append("        total = total + n").append(k).append(".get();\n");
+            }
+            out.append("        return total;\n    }\n}\n");
+            for (int k = 0; k < size; k++) {
+                out.append("class Node").append(k).append(" {\n")
+                        .append("    private int state;\n    private int seen;\n")
+                        .append("    Node").append(k).append("(int initial) {\n        this.state = initial;\n        seen = initial + 1;\n    }\n")
+                        .append("    int get() {\n        state = state + seen;\n        return state;\n    }\n");
+                if (k + 1 < size) {
+                    out.append("}\n");
+                }
+            }
+        }
+    };
+
+    /** Appends the members (and, for some shapes, further classes) of the generated source. */
+    abstract void body(StringBuilder out, int size);
+
+    String generate(int size) {
+        StringBuilder out = new StringBuilder("public class Bench {\n    private int value;\n");
+        out.append("    Bench(int value) {\n        this.value = value;\n    }\n");
+        body(out, size);
+        return out.append("}\n").toString();
+    }
+
+    private static void helper(StringBuilder out) {
+        out.append("    int helper(int x, int y, int z) {\n        return x + y + z;\n    }\n");
+    }
+}
@@ -0,0 +1,341 @@
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.PackageDeclaration;
+import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.expr.*;
+import com.github.javaparser.ast.nodeTypes.NodeWithImplements;
+import com.github.javaparser.ast.nodeTypes.NodeWithTypeParameters;
+import com.github.javaparser.ast.stmt.CatchClause;
+import com.github.javaparser.ast.stmt.ReturnStmt;
+import com.github.javaparser.ast.type.ArrayType;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.PrimitiveType;
+import com.github.javaparser.ast.type.Type;
+
+import java.util.*;
+
+/**
+ * Declarations and per-method facts gathered during the walk, plus the graph being built.
+ * The context keeps the enclosing class/method/constructor stacks so rules never have to
+ * search ancestors or re-traverse subtrees.
+ */
+class AnalysisContext {
+    final EdgeStore edges = new EdgeStore();
+    /** Whether scope and control edges are kept as regions; see {@link RegionTable}. */
+    final boolean ranges;
+    /** The lines AST nodes begin on, collected only for range-encoded graphs. */
+    final BitSet nodeLines;
+    /** Whether rules finish concurrently and may spread their own work over threads. */
+    final boolean parallel;
+    /** Whether the tree is released as the walk leaves it, so rules must not keep nodes; see {@link LeanTree}. */
+    final boolean lean;
+    private final FileBudget budget;
+
+    final Map<String, Integer> constructorDecls = new HashMap<>();
+    final Map<String, Integer> fieldDecls = new HashMap<>();
+
+    final List<NamedLine> classes = new ArrayList<>();
+    final List<MethodFacts> methods = new ArrayList<>();
+    final List<ConstructorFacts> constructors = new ArrayList<>();
+    /** Declarations and calls for call resolution, here and across files. */
+    final FileSymbols symbols = new FileSymbols();
+
+    private final Deque<String> openClasses = new ArrayDeque<>();
+    private final Deque<MethodFacts> openMethods = new ArrayDeque<>();
+    private final Deque<ConstructorFacts> openConstructors = new ArrayDeque<>();
+    private final Deque<TypeSymbol> openTypes = new ArrayDeque<>();
+    // declared types of the parameters and locals seen so far in each open method or constructor
+    private final Deque<Map<String, String>> localTypes = new ArrayDeque<>();
+    private SymbolIndex index;
+    // the buffer of the rule finishing on the current thread, when rules finish concurrently
+    private final ThreadLocal<EdgeStore> buffers = new ThreadLocal<>();
+    private final ThreadLocal<FileBudget> budgets = new ThreadLocal<>();
+
+    AnalysisContext(boolean ranges, boolean parallel, boolean lean, FileBudget budget) {
+        this.ranges = ranges;
+        this.nodeLines = ranges ? new BitSet() : null;
+        this.parallel = parallel;
+        this.lean = lean;
+        this.budget = budget;
+    }
+
+    /**
+     * Adds an edge to the graph or, while a rule finishes concurrently, to that rule's buffer.
+     * Rules must add edges from the thread {@link EdgeRule#finish} was called on.
+     */
+    void addEdge(int from, int to, EdgeLabel label) {
+        (parallel ? buffers.get() : edges).add(from, to, label);
+    }
+
+    void addRegion(int start, int end, int anchor, EdgeLabel label) {
+        (parallel ? buffers.get() : edges).addRegion(start, end, anchor, label);
+    }
+
+    /** Checked by long-running passes; see {@link FileBudget}. Forked on the threads rules finish on. */
+    FileBudget budget() {
+        FileBudget forked = budgets.get();
+        return forked != null ? forked : budget;
+    }
+
+    /** Runs {@code finish} with this thread's edges going to {@code buffer} and its allocation to the budget. */
+    void finishInto(EdgeStore buffer, Runnable finish) {
+        FileBudget forked = budget.fork();
+        buffers.set(buffer);
+        budgets.set(forked);
+        try {
+            forked.check();
+            finish.run();
+        } finally {
+            forked.release();
+            budgets.remove();
+            buffers.remove();
+        }
+    }
+
+    /** Indexes over the collected declarations; only valid once the walk is complete. */
+    SymbolIndex index() {
+        if (index == null) {
+            index = new SymbolIndex(this);
+        }
+        return index;
+    }
+
+    String currentClass() {
+        return openClasses.peek();
+    }
+
+    MethodFacts currentMethod() {
+        return openMethods.peek();
+    }
+
+    void enter(Node parent, Node node, int line) {
+        if (nodeLines != null) {
+            nodeLines.set(line);
+        }
+        if (node instanceof TypeDeclaration) {
+            TypeDeclaration<?> declaration = (TypeDeclaration<?>) node;
+            String name = declaration.getNameAsString();
+            String qualifiedName = !openTypes.isEmpty() ? openTypes.peek().qualifiedName + "." + name
+                    : symbols.packageName.isEmpty() ? name : symbols.packageName + "." + name;
+            TypeSymbol type = new TypeSymbol(name, qualifiedName, line, supertypes(declaration));
+            symbols.types.add(type);
+            openTypes.push(type);
+        }
+        if (node instanceof ClassOrInterfaceDeclaration) {
+            String className = ((ClassOrInterfaceDeclaration) node).getNameAsString();
+            classes.add(new NamedLine(className, line));
+            openClasses.push(className);
+        } else if (node instanceof MethodDeclaration) {
+            MethodDeclaration declaration = (MethodDeclaration) node;
+            MethodFacts method = new MethodFacts(methodSymbol(declaration, line));
+            methods.add(method);
+            symbols.methods.add(method.symbol);
+            openMethods.push(method);
+            localTypes.push(parameterTypes(declaration.getParameters()));
+        } else if (node instanceof ConstructorDeclaration) {
+            ConstructorFacts constructor = new ConstructorFacts(line);
+            String className = currentClass();
+            constructorDecls.put(className == null ? "" : className, line);
+            constructors.add(constructor);
+            openConstructors.push(constructor);
+            localTypes.push(parameterTypes(((ConstructorDeclaration) node).getParameters()));
+        } else if (node instanceof FieldDeclaration) {
+            ((FieldDeclaration) node).getVariables().forEach(var -> {
+                fieldDecls.put(var.getNameAsString(), GraphAnalyzer.lineOf(var));
+                if (!openTypes.isEmpty()) {
+                    openTypes.peek().fieldTypes.put(var.getNameAsString(), typeName(var.getType()));
+                }
+            });
+        } else if (node instanceof VariableDeclarator && !(parent instanceof FieldDeclaration) && !localTypes.isEmpty()) {
+            VariableDeclarator var = (VariableDeclarator) node;
+            String type = var.getType().isVarType()
+                    ? var.getInitializer().map(this::expressionType).orElse(null) : typeName(var.getType());
+            localTypes.peek().put(var.getNameAsString(), type);
+        } else if (node instanceof Parameter && parent instanceof CatchClause && !localTypes.isEmpty()) {
+            localTypes.peek().put(((Parameter) node).getNameAsString(), typeName(((Parameter) node).getType()));
+        } else if (node instanceof ReturnStmt) {
+            if (!openMethods.isEmpty()) {
+                openMethods.peek().symbol.returns.add(line);
+            }
+        } else if (node instanceof AssignExpr) {
+            String target = targetName((AssignExpr) node);
+            record(FlowEvent.assign(line, target));
+            if (target.startsWith("this.")) {
+                for (ConstructorFacts constructor : openConstructors) {
+                    constructor.thisAssignments.putIfAbsent(target, line);
+                }
+            }
+        } else if (node instanceof NameExpr) {
+            record(FlowEvent.name(line, ((NameExpr) node).getNameAsString(), currentClass()));
+        } else if (node instanceof MethodCallExpr) {
+            symbols.calls.add(callSite((MethodCallExpr) node, line));
+        } else if (node instanceof PackageDeclaration) {
+            symbols.packageName = ((PackageDeclaration) node).getNameAsString();
+        } else if (node instanceof ImportDeclaration) {
+            ImportDeclaration declaration = (ImportDeclaration) node;
+            if (declaration.isAsterisk() && !declaration.isStatic()) {
+                symbols.wildcardImports.add(declaration.getNameAsString());
+            } else if (!declaration.isStatic()) {
+                symbols.imports.put(declaration.getName().getIdentifier(), declaration.getNameAsString());
+            }
+        }
+    }
+
+    void exit(Node parent, Node node) {
+        if (node instanceof ClassOrInterfaceDeclaration) {
+            openClasses.pop();
+        } else if (node instanceof MethodDeclaration) {
+            openMethods.pop();
+            localTypes.pop();
+        } else if (node instanceof ConstructorDeclaration) {
+            openConstructors.pop();
+            localTypes.pop();
+        }
+        if (node instanceof TypeDeclaration) {
+            openTypes.pop();
+        }
+    }
+
+    private MethodSymbol methodSymbol(MethodDeclaration declaration, int line) {
+        List<Parameter> parameters = declaration.getParameters();
+        String[] types = new String[parameters.size()];
+        for (int i = 0; i < types.length; i++) {
+            Type type = parameters.get(i).getType();
+            types[i] = isTypeVariable(declaration, type) ? null : typeName(type);
+            if (types[i] != null && parameters.get(i).isVarArgs()) {
+                types[i] += "[]";
+            }
+        }
+        boolean varargs = !parameters.isEmpty() && parameters.get(types.length - 1).isVarArgs();
+        return new MethodSymbol(openTypes.isEmpty() ? null : openTypes.peek().qualifiedName,
+                declaration.getNameAsString(), line, types, varargs);
+    }
+
+    /** Whether {@code type} names a type parameter of the method or of a declaration around it. */
+    private static boolean isTypeVariable(Node declaration, Type type) {
+        if (!(type instanceof ClassOrInterfaceType) || ((ClassOrInterfaceType) type).getScope().isPresent()) {
+            return false;
+        }
+        String name = ((ClassOrInterfaceType) type).getNameAsString();
+        for (Node node = declaration; node != null; node = node.getParentNode().orElse(null)) {
+            if (node instanceof NodeWithTypeParameters && ((NodeWithTypeParameters<?>) node).getTypeParameters()
+                    .stream().anyMatch(parameter -> parameter.getNameAsString().equals(name))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, String> parameterTypes(List<Parameter> parameters) {
+        Map<String, String> types = new HashMap<>();
+        for (Parameter parameter : parameters) {
+            String type = typeName(parameter.getType());
+            types.put(parameter.getNameAsString(), type != null && parameter.isVarArgs() ? type + "[]" : type);
+        }
+        return types;
+    }
+
+    private static List<String> supertypes(TypeDeclaration<?> declaration) {
+        List<String> supertypes = new ArrayList<>();
+        if (declaration instanceof ClassOrInterfaceDeclaration) {
+            ((ClassOrInterfaceDeclaration) declaration).getExtendedTypes().forEach(type -> supertypes.add(type.getNameAsString()));
+        }
+        if (declaration instanceof NodeWithImplements) {
+            ((NodeWithImplements<?>) declaration).getImplementedTypes().forEach(type -> supertypes.add(type.getNameAsString()));
+        }
+        return supertypes;
+    }
+
+    private CallSite callSite(MethodCallExpr call, int line) {
+        String[] argumentTypes = new String[call.getArguments().size()];
+        for (int i = 0; i < argumentTypes.length; i++) {
+            argumentTypes[i] = expressionType(call.getArgument(i));
+        }
+        String enclosingType = openTypes.isEmpty() ? null : openTypes.peek().qualifiedName;
+        byte receiver = CallSite.UNKNOWN;
+        String receiverName = null;
+        Expression scope = call.getScope().orElse(null);
+        if (scope == null) {
+            receiver = CallSite.IMPLICIT;
+        } else if (scope instanceof ThisExpr && !((ThisExpr) scope).getTypeName().isPresent()) {
+            receiver = CallSite.THIS;
+        } else if (scope instanceof SuperExpr && !((SuperExpr) scope).getTypeName().isPresent()) {
+            receiver = CallSite.SUPER;
+        } else if (scope instanceof NameExpr) {
+            receiverName = ((NameExpr) scope).getNameAsString();
+            if (!localTypes.isEmpty() && localTypes.peek().containsKey(receiverName)) {
+                receiverName = localTypes.peek().get(receiverName);
+                receiver = receiverName != null ? CallSite.TYPE : CallSite.UNKNOWN;
+            } else {
+                receiver = CallSite.NAME;
+            }
+        } else if (scope instanceof FieldAccessExpr && ((FieldAccessExpr) scope).getScope() instanceof ThisExpr) {
+            receiver = CallSite.FIELD;
+            receiverName = ((FieldAccessExpr) scope).getNameAsString();
+        } else {
+            receiverName = expressionType(scope);
+            if (receiverName != null) {
+                receiver = CallSite.TYPE;
+            }
+        }
+        return new CallSite(line, call.getNameAsString(), argumentTypes, enclosingType, receiver, receiverName);
+    }
+
+    /** The simple static type of {@code expression} where it is evident from the walk so far, else null. */
+    private String expressionType(Expression expression) {
+        if (expression instanceof EnclosedExpr) {
+            return expressionType(((EnclosedExpr) expression).getInner());
+        } else if (expression instanceof StringLiteralExpr || expression instanceof TextBlockLiteralExpr) {
+            return "String";
+        } else if (expression instanceof IntegerLiteralExpr) {
+            return "int";
+        } else if (expression instanceof LongLiteralExpr) {
+            return "long";
+        } else if (expression instanceof DoubleLiteralExpr) {
+            String value = ((DoubleLiteralExpr) expression).getValue();
+            return value.endsWith("f") || value.endsWith("F") ? "float" : "double";
+        } else if (expression instanceof CharLiteralExpr) {
+            return "char";
+        } else if (expression instanceof BooleanLiteralExpr) {
+            return "boolean";
+        } else if (expression instanceof NullLiteralExpr) {
+            return "null";
+        } else if (expression instanceof ObjectCreationExpr) {
+            return typeName(((ObjectCreationExpr) expression).getType());
+        } else if (expression instanceof CastExpr) {
+            return typeName(((CastExpr) expression).getType());
+        } else if (expression instanceof ThisExpr && !((ThisExpr) expression).getTypeName().isPresent()) {
+            return openTypes.isEmpty() ? null : openTypes.peek().name;
+        } else if (expression instanceof NameExpr && !localTypes.isEmpty()) {
+            return localTypes.peek().get(((NameExpr) expression).getNameAsString());
+        }
+        return null;
+    }
+
+    /** The simple, erased name of {@code type}: {@code List<String>} is List; null for var and the like. */
+    static String typeName(Type type) {
+        if (type instanceof ClassOrInterfaceType) {
+            return ((ClassOrInterfaceType) type).getNameAsString();
+        } else if (type instanceof ArrayType) {
+            String component = typeName(((ArrayType) type).getComponentType());
+            return component == null ? null : component + "[]";
+        } else if (type instanceof PrimitiveType) {
+            return type.asString();
+        }
+        return null;
+    }
+
+    private void record(FlowEvent event) {
+        for (MethodFacts method : openMethods) {
+            method.events.add(event);
+        }
+    }
+
+    static String targetName(AssignExpr assign) {
+        Expression target = assign.getTarget();
+        if (target instanceof NameExpr && !target.getComment().isPresent()) {
+            return ((NameExpr) target).getNameAsString();
+        }
+        return target.toString();
+    }
+}
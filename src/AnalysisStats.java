@@ -0,0 +1,140 @@
+import org.json.JSONObject;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Phase timings and counters of one source file, or the sum over a project run. Each timed
+ * phase is also reported as a {@link PhaseEvent}. A per-file instance belongs to one thread;
+ * {@link #merge} may be called concurrently on a shared total.
+ */
+class AnalysisStats {
+    private final String file;
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private final long[] edgesByLabel = new long[EdgeLabel.values().length];
+    private long files;
+    private long nodes;
+    private long duplicates;
+
+    /** {@code file} names the source in profiling events; null for totals. */
+    AnalysisStats(String file) {
+        this.file = file;
+    }
+
+    /** Starts timing {@code phase}; closing the timer records it. */
+    Timer time(String phase) {
+        return new Timer(phase);
+    }
+
+    final class Timer implements AutoCloseable {
+        private final String phase;
+        private final PhaseEvent event = new PhaseEvent();
+        private final long start;
+        private long edges;
+
+        private Timer(String phase) {
+            this.phase = phase;
+            event.begin();
+            start = System.nanoTime();
+        }
+
+        void edges(long edges) {
+            this.edges = edges;
+        }
+
+        @Override
+        public void close() {
+            phaseNanos.merge(phase, System.nanoTime() - start, Long::sum);
+            event.end();
+            if (event.shouldCommit()) {
+                event.file = file;
+                event.phase = phase;
+                event.edges = edges;
+                event.commit();
+            }
+        }
+    }
+
+    void countNodes(long nodes) {
+        this.nodes += nodes;
+    }
+
+    /** Records a finished graph and how many edges were rejected as duplicates while building it. */
+    void countGraph(CompactGraph graph, long duplicates) {
+        files++;
+        this.duplicates += duplicates;
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            edgesByLabel[graph.label(edge).ordinal()]++;
+        }
+    }
+
+    synchronized void merge(AnalysisStats other) {
+        files += other.files;
+        nodes += other.nodes;
+        duplicates += other.duplicates;
+        for (int i = 0; i < edgesByLabel.length; i++) {
+            edgesByLabel[i] += other.edgesByLabel[i];
+        }
+        other.phaseNanos.forEach((phase, nanos) -> phaseNanos.merge(phase, nanos, Long::sum));
+    }
+
+    /** Highest heap occupancy seen so far by the JVM, summed over the heap pools. */
+    static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private long edges() {
+        long edges = 0;
+        for (long count : edgesByLabel) {
+            edges += count;
+        }
+        return edges;
+    }
+
+    synchronized JSONObject toJson() {
+        JSONObject phases = new JSONObject();
+        phaseNanos.forEach((phase, nanos) -> phases.put(phase, nanos / 1e6));
+        JSONObject labels = new JSONObject();
+        for (EdgeLabel label : EdgeLabel.values()) {
+            labels.put(label.text(), edgesByLabel[label.ordinal()]);
+        }
+        return new JSONObject()
+                .put("files", files)
+                .put("nodes", nodes)
+                .put("edges", edges())
+                .put("duplicateEdges", duplicates)
+                .put("edgesByLabel", labels)
+                .put("phaseMillis", phases)
+                .put("peakHeapBytes", peakHeapBytes());
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder out = new StringBuilder();
+        long total = 0;
+        for (long nanos : phaseNanos.values()) {
+            total += nanos;
+        }
+        out.append(String.format("%-22s %12s %7s%n", "phase", "ms", "share"));
+        for (Map.Entry<String, Long> phase : phaseNanos.entrySet()) {
+            out.append(String.format("%-22s %12.1f %6.1f%%%n", phase.getKey(), phase.getValue() / 1e6,
+                    total == 0 ? 0 : phase.getValue() * 100.0 / total));
+        }
+        out.append(String.format("%nfiles %d, AST nodes %d, edges %d, duplicate edges rejected %d%n",
+                files, nodes, edges(), duplicates));
+        for (EdgeLabel label : EdgeLabel.values()) {
+            out.append(String.format("  %-20s %10d%n", label.text(), edgesByLabel[label.ordinal()]));
+        }
+        out.append(String.format("peak heap %.1f MB", peakHeapBytes() / 1048576.0));
+        return out.toString();
+    }
+}
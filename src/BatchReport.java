@@ -0,0 +1,67 @@
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * What went wrong or took long in a project run: the files that failed and why, the files
+ * analysed in degraded mode after exceeding their {@link FileBudget}, and how long each file
+ * took. Safe for concurrent use.
+ */
+class BatchReport {
+    private final Map<String, String> failed = new TreeMap<>();
+    private final Map<String, String> degraded = new TreeMap<>();
+    private final Map<String, Long> nanos = new HashMap<>();
+
+    synchronized void failed(String file, String reason) {
+        failed.put(file, reason);
+    }
+
+    synchronized void degraded(String file, String reason) {
+        degraded.put(file, reason);
+    }
+
+    synchronized void timed(String file, long nanos) {
+        this.nanos.put(file, nanos);
+    }
+
+    synchronized int failedCount() {
+        return failed.size();
+    }
+
+    synchronized int degradedCount() {
+        return degraded.size();
+    }
+
+    /** The {@code count} files that took longest, slowest first. */
+    synchronized List<Map.Entry<String, Long>> slowest(int count) {
+        List<Map.Entry<String, Long>> files = new ArrayList<>(nanos.entrySet());
+        files.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        return new ArrayList<>(files.subList(0, Math.min(count, files.size())));
+    }
+
+    synchronized JSONObject toJson(int slowest) {
+        JSONArray slow = new JSONArray();
+        for (Map.Entry<String, Long> file : slowest(slowest)) {
+            slow.put(new JSONObject().put("file", file.getKey()).put("millis", file.getValue() / 1e6));
+        }
+        return new JSONObject()
+                .put("failed", reasons(failed))
+                .put("degraded", reasons(degraded))
+                .put("slowest", slow);
+    }
+
+    void write(Path file, int slowest) throws IOException {
+        Files.write(file, toJson(slowest).toString(2).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static JSONArray reasons(Map<String, String> files) {
+        JSONArray array = new JSONArray();
+        files.forEach((file, reason) -> array.put(new JSONObject().put("file", file).put("reason", reason)));
+        return array;
+    }
+}
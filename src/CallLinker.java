@@ -0,0 +1,107 @@
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Links calls across the files of a project run. Workers hand in the {@link FileSymbols} of
+ * each file as it is analysed; once every file is in, one {@link SymbolTable} over the whole
+ * project resolves each call site, and calls whose callee lives in another file become
+ * call or parameter-in edges to the callee's declaration and parameter-out edges to its
+ * return statements. Calls within a file are already in that file's graph.
+ */
+class CallLinker {
+    /** A cross-file edge from a line of one file to a line of another. */
+    static final class Link implements Comparable<Link> {
+        final String file;
+        final int line;
+        final EdgeLabel label;
+        final String targetFile;
+        final int target;
+
+        Link(String file, int line, EdgeLabel label, String targetFile, int target) {
+            this.file = file;
+            this.line = line;
+            this.label = label;
+            this.targetFile = targetFile;
+            this.target = target;
+        }
+
+        @Override
+        public int compareTo(Link other) {
+            int order = file.compareTo(other.file);
+            if (order == 0) order = Integer.compare(line, other.line);
+            if (order == 0) order = targetFile.compareTo(other.targetFile);
+            if (order == 0) order = Integer.compare(target, other.target);
+            if (order == 0) order = label.compareTo(other.label);
+            return order;
+        }
+    }
+
+    private final Map<String, FileSymbols> files = new HashMap<>();
+
+    synchronized void add(String key, FileSymbols symbols) {
+        files.put(key, symbols);
+    }
+
+    /** Resolves every call of every file added so far; the links come sorted and without duplicates. */
+    synchronized List<Link> link() {
+        SymbolTable table = new SymbolTable();
+        List<String> keys = new ArrayList<>(files.keySet());
+        Collections.sort(keys);
+        for (String key : keys) {
+            table.add(key, files.get(key));
+        }
+        TreeSet<Link> links = new TreeSet<>();
+        for (String key : keys) {
+            FileSymbols symbols = files.get(key);
+            for (CallSite call : symbols.calls) {
+                for (SymbolTable.Callee callee : table.resolve(symbols, call)) {
+                    if (callee.file.equals(key)) {
+                        continue;
+                    }
+                    links.add(new Link(key, call.line, call.arguments > 0 ? EdgeLabel.PARAMETER_IN : EdgeLabel.CALL,
+                            callee.file, callee.method.line));
+                    for (int returnLine : callee.method.returns) {
+                        links.add(new Link(key, call.line, EdgeLabel.PARAMETER_OUT, callee.file, returnLine));
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(links);
+    }
+
+    /**
+     * Writes {@code links} as one JSON object keyed by calling file, then by calling line, each
+     * holding the line's edges as {"label", "target", "file"}.
+     */
+    static void write(List<Link> links, Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write('{');
+            Link previous = null;
+            for (Link link : links) {
+                boolean sameFile = previous != null && previous.file.equals(link.file);
+                boolean sameLine = sameFile && previous.line == link.line;
+                if (!sameFile) {
+                    if (previous != null) out.write("\n    ]\n  },");
+                    out.write("\n  " + JSONObject.quote(link.file) + ": {");
+                } else if (!sameLine) {
+                    out.write("\n    ],");
+                }
+                if (!sameLine) {
+                    out.write("\n    \"" + link.line + "\": [");
+                } else {
+                    out.write(',');
+                }
+                out.write("\n      {\"label\": " + JSONObject.quote(link.label.text()) + ", \"target\": " + link.target
+                        + ", \"file\": " + JSONObject.quote(link.targetFile) + "}");
+                previous = link;
+            }
+            out.write(previous != null ? "\n    ]\n  }\n}\n" : "}\n");
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * call and parameter-in edges from a call site to the methods of this file it resolves to
+ * (see {@link SymbolTable}). Arguments get their data edges from {@link DataFlowRule} like
+ * any other variable use.
+ */
+class CallRule implements EdgeRule {
+    @Override
+    public String name() {
+        return "call";
+    }
+
+    @Override
+    public void finish(AnalysisContext ctx) {
+        for (CallSite call : ctx.symbols.calls) {
+            for (MethodSymbol method : ctx.index().callees(call)) {
+                if (call.line != method.line) {
+                    ctx.addEdge(call.line, method.line, call.arguments > 0 ? EdgeLabel.PARAMETER_IN : EdgeLabel.CALL);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * A method call and what the walk could tell about its receiver and arguments.
+ */
+class CallSite {
+    /** No receiver: a method of an enclosing type or one of its supertypes. */
+    static final byte IMPLICIT = 0;
+    /** {@code this.m()}: the enclosing type. */
+    static final byte THIS = 1;
+    /** {@code super.m()}: the supertypes of the enclosing type. */
+    static final byte SUPER = 2;
+    /** A receiver of known static type, named by {@link #receiverName}. */
+    static final byte TYPE = 3;
+    /** {@code x.m()} where x was not a local variable: a field of the enclosing types, or a type. */
+    static final byte NAME = 4;
+    /** {@code this.x.m()}: a field of the enclosing types. */
+    static final byte FIELD = 5;
+    /** Any other receiver expression. */
+    static final byte UNKNOWN = 6;
+
+    final int line;
+    final String name;
+    final int arguments;
+    /** Simple type name of each argument where it could be inferred, else null. */
+    final String[] argumentTypes;
+    /** Qualified name of the innermost enclosing type, or null. */
+    final String enclosingType;
+    final byte receiver;
+    final String receiverName;
+
+    CallSite(int line, String name, String[] argumentTypes, String enclosingType, byte receiver, String receiverName) {
+        this.line = line;
+        this.name = name;
+        this.arguments = argumentTypes.length;
+        this.argumentTypes = argumentTypes;
+        this.enclosingType = enclosingType;
+        this.receiver = receiver;
+        this.receiverName = receiverName;
+    }
+}
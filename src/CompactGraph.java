@@ -0,0 +1,244 @@
+import java.util.*;
+
+/**
+ * Immutable dependency graph in compressed-sparse-row form. Lines that have at least one
+ * outgoing edge are stored in ascending order; the edges of {@code line(i)} occupy
+ * {@code [edgeStart(i), edgeEnd(i))} of the target and label arrays, ordered by target.
+ *
+ * A range-encoded graph also carries a {@link RegionTable}; its scope and control edges are
+ * then not stored per line, and {@link #flatten} derives them when needed.
+ */
+public final class CompactGraph {
+    private final int[] lines;
+    private final int[] offsets;
+    private final int[] targets;
+    private final byte[] labels;
+    private final RegionTable regions;
+
+    CompactGraph(int[] lines, int[] offsets, int[] targets, byte[] labels) {
+        this(lines, offsets, targets, labels, null);
+    }
+
+    CompactGraph(int[] lines, int[] offsets, int[] targets, byte[] labels, RegionTable regions) {
+        this.lines = lines;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.labels = labels;
+        this.regions = regions;
+    }
+
+    /**
+     * Builds the CSR layout from edges in insertion order. Edges with equal targets on the
+     * same line keep the order dependencies.json has always listed them in (see sortLine).
+     */
+    static CompactGraph fromEdges(int[] from, int[] to, byte[] labelCodes, int size, RegionTable regions) {
+        int maxLine = 0;
+        for (int i = 0; i < size; i++) {
+            maxLine = Math.max(maxLine, from[i]);
+        }
+        int[] counts = new int[maxLine + 2];
+        for (int i = 0; i < size; i++) {
+            counts[from[i]]++;
+        }
+        int lineCount = 0;
+        for (int count : counts) {
+            if (count > 0) lineCount++;
+        }
+
+        int[] lines = new int[lineCount];
+        int[] offsets = new int[lineCount + 1];
+        int[] cursor = counts;
+        int index = 0;
+        int offset = 0;
+        for (int line = 0; line <= maxLine; line++) {
+            int count = counts[line];
+            if (count > 0) {
+                lines[index] = line;
+                offsets[index++] = offset;
+                cursor[line] = offset;
+                offset += count;
+            }
+        }
+        offsets[lineCount] = offset;
+
+        int[] targets = new int[size];
+        byte[] labels = new byte[size];
+        for (int i = 0; i < size; i++) {
+            int position = cursor[from[i]]++;
+            targets[position] = to[i];
+            labels[position] = labelCodes[i];
+        }
+
+        for (int i = 0; i < lineCount; i++) {
+            sortLine(targets, labels, offsets[i], offsets[i + 1]);
+        }
+        return new CompactGraph(lines, offsets, targets, labels, regions);
+    }
+
+    /**
+     * Orders the edges of one line by target. dependencies.json used to be written from a
+     * HashSet of {@link DependencyGraph.Dependency} sorted stably by target, so edges with equal
+     * targets came out in the set's iteration order: by hash bucket, then in insertion order.
+     * Graph files must not change with the store, so ties are broken by the bucket that set
+     * would have used, computed from the same hash.
+     */
+    private static void sortLine(int[] targets, byte[] labels, int start, int end) {
+        int length = end - start;
+        if (length < 2) return;
+        long[] keys = new long[length];
+        for (int i = 0; i < length; i++) {
+            keys[i] = ((long) targets[start + i] << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int capacity = 16; // a default HashSet grows past three quarters full
+        while (length > capacity / 4 * 3) {
+            capacity <<= 1;
+        }
+        byte[] original = Arrays.copyOfRange(labels, start, end);
+        for (int run = 0; run < length; ) {
+            int runEnd = run + 1;
+            while (runEnd < length && (keys[runEnd] >>> 32) == (keys[run] >>> 32)) {
+                runEnd++;
+            }
+            // equal targets: at most one edge per label, so insertion sort by bucket is cheap
+            for (int i = run + 1; i < runEnd; i++) {
+                long key = keys[i];
+                int bucket = bucket(key, original, capacity);
+                int j = i - 1;
+                while (j >= run && bucket(keys[j], original, capacity) > bucket) {
+                    keys[j + 1] = keys[j];
+                    j--;
+                }
+                keys[j + 1] = key;
+            }
+            run = runEnd;
+        }
+        for (int i = 0; i < length; i++) {
+            targets[start + i] = (int) (keys[i] >>> 32);
+            labels[start + i] = original[(int) keys[i]];
+        }
+    }
+
+    /** The HashSet bucket of the edge behind {@code key}: Dependency.hashCode, spread as HashMap spreads it. */
+    private static int bucket(long key, byte[] labels, int capacity) {
+        int hash = 31 * (31 * 17 + (int) (key >>> 32)) + EdgeLabel.fromCode(labels[(int) key]).text().hashCode();
+        return (hash ^ (hash >>> 16)) & (capacity - 1);
+    }
+
+    public int lineCount() {
+        return lines.length;
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    public int edgeStart(int index) {
+        return offsets[index];
+    }
+
+    public int edgeEnd(int index) {
+        return offsets[index + 1];
+    }
+
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    public EdgeLabel label(int edge) {
+        return EdgeLabel.fromCode(labels[edge]);
+    }
+
+    /** Index of {@code line} in {@link #line(int)} order, or -1 if it has no edges. */
+    public int indexOf(int line) {
+        int index = Arrays.binarySearch(lines, line);
+        return index >= 0 ? index : -1;
+    }
+
+    /** The regions of a range-encoded graph, or null for a flat one. */
+    RegionTable regions() {
+        return regions;
+    }
+
+    /**
+     * The flat form of this graph, with every region expanded into the per-line edges a flat
+     * analysis produces. With {@code reduce}, an edge to a region's anchor is left out when the
+     * line also lies in a region of the same label whose anchor lies inside the first one:
+     * the line reaches the outer anchor through the inner anchor already, so each nesting
+     * chain is reduced to its innermost link.
+     */
+    public CompactGraph flatten(boolean reduce) {
+        if (regions == null) {
+            return this;
+        }
+        EdgeStore store = new EdgeStore();
+        // Scope edges are added before all other kinds and control edges after them, as the
+        // rules add them, so equal targets on a line keep the order a flat analysis gives
+        expand(store, reduce, false);
+        for (int i = 0; i < lines.length; i++) {
+            for (int edge = offsets[i]; edge < offsets[i + 1]; edge++) {
+                store.add(lines[i], targets[edge], label(edge));
+            }
+        }
+        expand(store, reduce, true);
+        return store.freeze(null);
+    }
+
+    /** Sweeps the node lines once, keeping the regions open at each line in a small active list. */
+    private void expand(EdgeStore store, boolean reduce, boolean control) {
+        long[] byStart = new long[regions.size()];
+        int count = 0;
+        for (int region = 0; region < regions.size(); region++) {
+            if ((regions.label(region) == EdgeLabel.CONTROL) == control) {
+                byStart[count++] = ((long) regions.start(region) << 32) | region;
+            }
+        }
+        Arrays.sort(byStart, 0, count);
+
+        int[] active = new int[count];
+        int activeCount = 0;
+        int next = 0;
+        for (int n = 0; n < regions.nodeLineCount(); n++) {
+            int line = regions.nodeLine(n);
+            int kept = 0;
+            for (int k = 0; k < activeCount; k++) {
+                if (regions.end(active[k]) >= line) {
+                    active[kept++] = active[k];
+                }
+            }
+            activeCount = kept;
+            for (; next < count && (int) (byStart[next] >>> 32) <= line; next++) {
+                int region = (int) byStart[next];
+                if (regions.end(region) >= line) {
+                    active[activeCount++] = region;
+                }
+            }
+            for (int k = 0; k < activeCount; k++) {
+                int region = active[k];
+                if (regions.anchor(region) != line && !(reduce && shadowed(region, active, activeCount, line))) {
+                    store.add(line, regions.anchor(region), regions.label(region));
+                }
+            }
+        }
+    }
+
+    /** Whether another open region of the same label has its anchor inside {@code region}. */
+    private boolean shadowed(int region, int[] active, int activeCount, int line) {
+        int anchor = regions.anchor(region);
+        for (int k = 0; k < activeCount; k++) {
+            int other = active[k];
+            int otherAnchor = regions.anchor(other);
+            if (other != region && regions.label(other) == regions.label(region)
+                    && otherAnchor != line && otherAnchor != anchor
+                    && otherAnchor >= regions.start(region) && otherAnchor <= regions.end(region)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
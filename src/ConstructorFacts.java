@@ -0,0 +1,12 @@
+import java.util.HashMap;
+import java.util.Map;
+
+class ConstructorFacts {
+    final int line;
+    // "this.x" target -> line of its first assignment inside the constructor
+    final Map<String, Integer> thisAssignments = new HashMap<>();
+
+    ConstructorFacts(int line) {
+        this.line = line;
+    }
+}
@@ -0,0 +1,563 @@
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.ast.expr.*;
+import com.github.javaparser.ast.stmt.*;
+
+import java.util.*;
+
+/**
+ * Statement-level control-flow graph of one method body, reduced to what reaching
+ * definitions need: each basic block is the ordered list of the local variable uses and
+ * definitions it performs, plus its successor blocks. Block 0 is the entry.
+ *
+ * Branches, all loop forms (with back edges), switch fall-through, labelled break/continue
+ * and try/catch/finally are modelled; expressions are treated as straight-line code. Inside a
+ * try every statement ends its block, so handlers see the state between any two statements,
+ * and every way out of a try or its handlers passes through its finally block. Lambda
+ * bodies are inlined where they appear, and local or anonymous classes are left to their
+ * own methods. Each declaration in the method (local, parameter or catch parameter) is its
+ * own variable, and a name resolves to the innermost declaration in scope, so fields and
+ * same-named locals of sibling blocks never share definitions.
+ */
+class ControlFlowGraph {
+    private final List<Ints> actions = new ArrayList<>();
+    private final List<Ints> successors = new ArrayList<>();
+    private int variableCount;
+    private final Ints definitionLines = new Ints();
+    private final Ints definitionVariables = new Ints();
+
+    // Build state
+    private final Deque<Map<String, Integer>> scopes = new ArrayDeque<>();
+    private final Deque<JumpTarget> targets = new ArrayDeque<>();
+    // Break and continue targets reached only through each enclosing finally block, innermost first
+    private final Deque<Ints> finallyJumps = new ArrayDeque<>();
+    private int tryDepth;
+    private String pendingLabel;
+    private int current;
+
+    private ControlFlowGraph() {
+    }
+
+    static ControlFlowGraph of(MethodDeclaration method) {
+        ControlFlowGraph cfg = new ControlFlowGraph();
+        cfg.scopes.push(new HashMap<>());
+        for (Parameter parameter : method.getParameters()) {
+            cfg.declare(parameter.getNameAsString());
+        }
+        cfg.current = cfg.block();
+        method.getBody().ifPresent(cfg::statement);
+        return cfg;
+    }
+
+    int blockCount() {
+        return actions.size();
+    }
+
+    int variableCount() {
+        return variableCount;
+    }
+
+    int definitionCount() {
+        return definitionLines.size;
+    }
+
+    int definitionLine(int definition) {
+        return definitionLines.data[definition];
+    }
+
+    int definitionVariable(int definition) {
+        return definitionVariables.data[definition];
+    }
+
+    /**
+     * The block's actions as (code, operand) pairs: code is {@code variable << 1} for a use,
+     * whose operand is the line, or {@code variable << 1 | 1} for a definition, whose
+     * operand is the definition index.
+     */
+    int[] actions(int block) {
+        return actions.get(block).toArray();
+    }
+
+    int[] successors(int block) {
+        return successors.get(block).toArray();
+    }
+
+    private int block() {
+        actions.add(new Ints());
+        successors.add(new Ints());
+        return actions.size() - 1;
+    }
+
+    private void link(int from, int to) {
+        if (from >= 0) {
+            successors.get(from).add(to);
+        }
+    }
+
+    /** A new variable for a declaration of {@code name} in the innermost scope. */
+    private void declare(String name) {
+        scopes.peek().put(name, variableCount++);
+    }
+
+    /** The declaration {@code name} refers to here, or -1 for a field or a name from outside the method. */
+    private int variable(String name) {
+        for (Map<String, Integer> scope : scopes) {
+            Integer id = scope.get(name);
+            if (id != null) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    private void use(String name, Node node) {
+        int variable = variable(name);
+        if (variable >= 0) {
+            actions.get(current).add(variable << 1).add(line(node));
+        }
+    }
+
+    private void define(String name, Node node) {
+        int variable = variable(name);
+        if (variable >= 0) {
+            definitionLines.add(line(node));
+            definitionVariables.add(variable);
+            actions.get(current).add(variable << 1 | 1).add(definitionLines.size - 1);
+        }
+    }
+
+    /** Whether the declarations inside {@code node} go out of scope with it. */
+    private static boolean opensScope(Node node) {
+        return node instanceof BlockStmt || node instanceof ForStmt || node instanceof ForEachStmt
+                || node instanceof SwitchStmt || node instanceof SwitchExpr || node instanceof CatchClause
+                || node instanceof LambdaExpr;
+    }
+
+    private static int line(Node node) {
+        return GraphAnalyzer.lineOf(node);
+    }
+
+    private void statement(Statement statement) {
+        if (current < 0) {
+            // Unreachable code still gets a block, it just has no predecessors
+            current = block();
+        }
+        String label = pendingLabel;
+        pendingLabel = null;
+        boolean scoped = opensScope(statement);
+        if (scoped) {
+            scopes.push(new HashMap<>());
+        }
+
+        if (statement instanceof BlockStmt) {
+            for (Statement child : ((BlockStmt) statement).getStatements()) {
+                statement(child);
+            }
+        } else if (statement instanceof ExpressionStmt) {
+            expression(((ExpressionStmt) statement).getExpression());
+        } else if (statement instanceof IfStmt) {
+            IfStmt ifStmt = (IfStmt) statement;
+            expression(ifStmt.getCondition());
+            int condition = current;
+            current = block();
+            link(condition, current);
+            statement(ifStmt.getThenStmt());
+            int thenEnd = current;
+            int elseEnd = condition;
+            if (ifStmt.getElseStmt().isPresent()) {
+                current = block();
+                link(condition, current);
+                statement(ifStmt.getElseStmt().get());
+                elseEnd = current;
+            }
+            current = block();
+            link(thenEnd, current);
+            link(elseEnd, current);
+        } else if (statement instanceof WhileStmt) {
+            WhileStmt whileStmt = (WhileStmt) statement;
+            int header = block();
+            int exit = block();
+            link(current, header);
+            current = header;
+            expression(whileStmt.getCondition());
+            loopBody(whileStmt.getBody(), label, current, exit, header);
+            if (!isTrue(whileStmt.getCondition())) {
+                link(header, exit);
+            }
+            current = exit;
+        } else if (statement instanceof DoStmt) {
+            DoStmt doStmt = (DoStmt) statement;
+            int condition = block();
+            int exit = block();
+            int body = block();
+            link(current, body);
+            current = body;
+            targets.push(new JumpTarget(label, exit, condition, true, finallyJumps.size()));
+            statement(doStmt.getBody());
+            targets.pop();
+            link(current, condition);
+            current = condition;
+            expression(doStmt.getCondition());
+            link(current, body);
+            if (!isTrue(doStmt.getCondition())) {
+                link(current, exit);
+            }
+            current = exit;
+        } else if (statement instanceof ForStmt) {
+            ForStmt forStmt = (ForStmt) statement;
+            forStmt.getInitialization().forEach(this::expression);
+            int header = block();
+            int update = block();
+            int exit = block();
+            link(current, header);
+            current = header;
+            forStmt.getCompare().ifPresent(this::expression);
+            int conditionEnd = current;
+            loopBody(forStmt.getBody(), label, conditionEnd, exit, update);
+            current = update;
+            forStmt.getUpdate().forEach(this::expression);
+            link(current, header);
+            if (forStmt.getCompare().isPresent() && !isTrue(forStmt.getCompare().get())) {
+                link(conditionEnd, exit);
+            }
+            current = exit;
+        } else if (statement instanceof ForEachStmt) {
+            ForEachStmt forEach = (ForEachStmt) statement;
+            expression(forEach.getIterable());
+            int header = block();
+            int exit = block();
+            link(current, header);
+            link(header, exit);
+            int body = block();
+            link(header, body);
+            current = body;
+            // The loop variable is defined afresh on every iteration
+            expression(forEach.getVariable());
+            loopBody(forEach.getBody(), label, current, exit, header);
+            current = exit;
+        } else if (statement instanceof SwitchStmt) {
+            switchStatement((SwitchStmt) statement, label);
+        } else if (statement instanceof LabeledStmt) {
+            LabeledStmt labeled = (LabeledStmt) statement;
+            Statement inner = labeled.getStatement();
+            if (inner instanceof WhileStmt || inner instanceof DoStmt || inner instanceof ForStmt
+                    || inner instanceof ForEachStmt || inner instanceof SwitchStmt) {
+                pendingLabel = labeled.getLabel().asString();
+                statement(inner);
+            } else {
+                int exit = block();
+                targets.push(new JumpTarget(labeled.getLabel().asString(), exit, -1, false, finallyJumps.size()));
+                statement(inner);
+                targets.pop();
+                link(current, exit);
+                current = exit;
+            }
+        } else if (statement instanceof BreakStmt) {
+            JumpTarget target = target(((BreakStmt) statement).getLabel().map(SimpleName::asString).orElse(null), false);
+            if (target != null) {
+                jump(target, target.breakBlock);
+            }
+            current = -1;
+        } else if (statement instanceof ContinueStmt) {
+            JumpTarget target = target(((ContinueStmt) statement).getLabel().map(SimpleName::asString).orElse(null), true);
+            if (target != null) {
+                jump(target, target.continueBlock);
+            }
+            current = -1;
+        } else if (statement instanceof ReturnStmt) {
+            ((ReturnStmt) statement).getExpression().ifPresent(this::expression);
+            current = -1;
+        } else if (statement instanceof ThrowStmt) {
+            expression(((ThrowStmt) statement).getExpression());
+            current = -1;
+        } else if (statement instanceof TryStmt) {
+            tryStatement((TryStmt) statement);
+        } else if (statement instanceof SynchronizedStmt) {
+            expression(((SynchronizedStmt) statement).getExpression());
+            statement(((SynchronizedStmt) statement).getBody());
+        } else if (!(statement instanceof LocalClassDeclarationStmt) && !(statement instanceof LocalRecordDeclarationStmt)) {
+            // assert, yield, explicit constructor calls and anything newer: straight-line
+            expression(statement);
+        }
+        if (scoped) {
+            scopes.pop();
+        }
+        if (tryDepth > 0 && current >= 0 && actions.get(current).size > 0) {
+            // The next statement may throw, so the state after this one must reach the handlers
+            int next = block();
+            link(current, next);
+            current = next;
+        }
+    }
+
+    /** Builds a loop body entered from {@code from}; continue and the body's end go back to {@code next}. */
+    private void loopBody(Statement body, String label, int from, int exit, int next) {
+        int start = block();
+        link(from, start);
+        current = start;
+        targets.push(new JumpTarget(label, exit, next, true, finallyJumps.size()));
+        statement(body);
+        targets.pop();
+        link(current, next);
+    }
+
+    private void switchStatement(SwitchStmt switchStmt, String label) {
+        expression(switchStmt.getSelector());
+        int selector = current;
+        int exit = block();
+        targets.push(new JumpTarget(label, exit, -1, true, finallyJumps.size()));
+        int fallThrough = -1;
+        boolean hasDefault = false;
+        for (SwitchEntry entry : switchStmt.getEntries()) {
+            hasDefault |= entry.isDefault() || entry.getLabels().isEmpty();
+            current = block();
+            link(selector, current);
+            link(fallThrough, current);
+            entry.getLabels().forEach(this::expression);
+            entry.getGuard().ifPresent(this::expression);
+            for (Statement child : entry.getStatements()) {
+                statement(child);
+            }
+            if (entry.getType() == SwitchEntry.Type.STATEMENT_GROUP) {
+                fallThrough = current;
+            } else {
+                link(current, exit);
+                fallThrough = -1;
+            }
+        }
+        link(fallThrough, exit);
+        if (!hasDefault) {
+            link(selector, exit);
+        }
+        targets.pop();
+        current = exit;
+    }
+
+    private void tryStatement(TryStmt tryStmt) {
+        boolean hasFinally = tryStmt.getFinallyBlock().isPresent();
+        if (hasFinally) {
+            finallyJumps.push(new Ints());
+        }
+        // Resources are in scope in the try block only
+        scopes.push(new HashMap<>());
+        tryStmt.getResources().forEach(this::expression);
+        // An empty entry block, so handlers also see the state from before the first statement
+        int first = block();
+        link(current, first);
+        current = block();
+        link(first, current);
+        tryDepth++;
+        statement(tryStmt.getTryBlock());
+        scopes.pop();
+        int last = actions.size();
+        List<Integer> ends = new ArrayList<>();
+        ends.add(current);
+        // Any block of the try may throw, so each handler is reachable from all of them
+        for (CatchClause catchClause : tryStmt.getCatchClauses()) {
+            current = block();
+            for (int block = first; block < last; block++) {
+                link(block, current);
+            }
+            scopes.push(new HashMap<>());
+            declare(catchClause.getParameter().getNameAsString());
+            statement(catchClause.getBody());
+            scopes.pop();
+            ends.add(current);
+        }
+        tryDepth--;
+        int handled = actions.size();
+        current = block();
+        if (!hasFinally) {
+            for (int end : ends) {
+                link(end, current);
+            }
+            return;
+        }
+        // Completing, throwing, returning or jumping: every block of the try and its handlers
+        // may leave through the finally block
+        for (int block = first; block < handled; block++) {
+            link(block, current);
+        }
+        Ints jumps = finallyJumps.pop();
+        statement(tryStmt.getFinallyBlock().get());
+        for (int i = 0; i < jumps.size; i++) {
+            link(current, jumps.data[i]);
+        }
+    }
+
+    /**
+     * Links a break or continue to {@code to}. With finally blocks in between, the jump goes
+     * through them: the innermost is reached from every block of its try, and the outermost
+     * goes on to {@code to} once it completes.
+     */
+    private void jump(JumpTarget target, int to) {
+        if (finallyJumps.size() == target.finallies) {
+            link(current, to);
+            return;
+        }
+        Iterator<Ints> open = finallyJumps.iterator();
+        for (int i = finallyJumps.size() - 1; i > target.finallies; i--) {
+            open.next();
+        }
+        open.next().add(to);
+    }
+
+    private JumpTarget target(String label, boolean isContinue) {
+        for (JumpTarget target : targets) {
+            if (label != null ? label.equals(target.label) : target.unlabelled) {
+                if (!isContinue || target.continueBlock >= 0) {
+                    return target;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isTrue(Expression condition) {
+        return condition instanceof BooleanLiteralExpr && ((BooleanLiteralExpr) condition).getValue();
+    }
+
+    /** Records the uses and definitions of an expression subtree in evaluation order. */
+    private void expression(Node root) {
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(root, enter(root)));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.next < frame.children.size()) {
+                Node child = frame.children.get(frame.next++);
+                if (!(child instanceof Comment)) {
+                    stack.push(new Frame(child, enter(child)));
+                }
+            } else {
+                stack.pop();
+                exit(frame.node);
+            }
+        }
+    }
+
+    /** Handles a node on the way down and returns the children to visit. */
+    private List<? extends Node> enter(Node node) {
+        if (opensScope(node)) {
+            scopes.push(new HashMap<>());
+        }
+        if (node instanceof NameExpr) {
+            use(((NameExpr) node).getNameAsString(), node);
+            return Collections.emptyList();
+        } else if (node instanceof AssignExpr) {
+            AssignExpr assign = (AssignExpr) node;
+            return assign.getTarget() instanceof NameExpr
+                    ? Collections.singletonList(assign.getValue())
+                    : Arrays.asList(assign.getTarget(), assign.getValue());
+        } else if (node instanceof UnaryExpr && isIncrement((UnaryExpr) node)) {
+            return Collections.emptyList();
+        } else if (node instanceof VariableDeclarator) {
+            VariableDeclarator declarator = (VariableDeclarator) node;
+            declare(declarator.getNameAsString());
+            return declarator.getInitializer().map(Collections::singletonList).orElse(Collections.emptyList());
+        } else if (node instanceof LambdaExpr) {
+            for (Parameter parameter : ((LambdaExpr) node).getParameters()) {
+                declare(parameter.getNameAsString());
+            }
+            return Collections.singletonList(((LambdaExpr) node).getBody());
+        } else if (node instanceof ObjectCreationExpr) {
+            ObjectCreationExpr creation = (ObjectCreationExpr) node;
+            List<Node> children = new ArrayList<>(creation.getArguments());
+            creation.getScope().ifPresent(scope -> children.add(0, scope));
+            return children;
+        } else if (node instanceof Parameter) {
+            // a catch parameter inside a lambda body
+            declare(((Parameter) node).getNameAsString());
+            return Collections.emptyList();
+        } else if (node instanceof TypeDeclaration || node instanceof LocalClassDeclarationStmt
+                || node instanceof LocalRecordDeclarationStmt) {
+            return Collections.emptyList();
+        }
+        return node.getChildNodes();
+    }
+
+    /** Emits the definitions a node performs once its operands have been evaluated. */
+    private void exit(Node node) {
+        if (node instanceof AssignExpr) {
+            AssignExpr assign = (AssignExpr) node;
+            if (assign.getTarget() instanceof NameExpr) {
+                String name = ((NameExpr) assign.getTarget()).getNameAsString();
+                if (assign.getOperator() != AssignExpr.Operator.ASSIGN) {
+                    use(name, assign.getTarget());
+                }
+                define(name, assign);
+            }
+        } else if (node instanceof UnaryExpr && isIncrement((UnaryExpr) node)) {
+            String name = ((NameExpr) ((UnaryExpr) node).getExpression()).getNameAsString();
+            use(name, node);
+            define(name, node);
+        } else if (node instanceof VariableDeclarator) {
+            define(((VariableDeclarator) node).getNameAsString(), node);
+        }
+        if (opensScope(node)) {
+            scopes.pop();
+        }
+    }
+
+    private static boolean isIncrement(UnaryExpr unary) {
+        switch (unary.getOperator()) {
+            case PREFIX_INCREMENT:
+            case PREFIX_DECREMENT:
+            case POSTFIX_INCREMENT:
+            case POSTFIX_DECREMENT:
+                return unary.getExpression() instanceof NameExpr;
+            default:
+                return false;
+        }
+    }
+
+    private static final class JumpTarget {
+        final String label;
+        final int breakBlock;
+        // -1 for switch statements and labelled blocks, which continue cannot target
+        final int continueBlock;
+        // loops and switches take unlabelled breaks; labelled blocks only labelled ones
+        final boolean unlabelled;
+        // finally blocks already open around the target; a jump leaves the ones opened since
+        final int finallies;
+
+        JumpTarget(String label, int breakBlock, int continueBlock, boolean unlabelled, int finallies) {
+            this.label = label;
+            this.breakBlock = breakBlock;
+            this.continueBlock = continueBlock;
+            this.unlabelled = unlabelled;
+            this.finallies = finallies;
+        }
+    }
+
+    private static final class Frame {
+        final Node node;
+        final List<? extends Node> children;
+        int next;
+
+        Frame(Node node, List<? extends Node> children) {
+            this.node = node;
+            this.children = children;
+        }
+    }
+
+    private static final class Ints {
+        int[] data = new int[8];
+        int size;
+
+        Ints add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+            return this;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.stmt.CatchClause;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.TryStmt;
+
+/**
+ * control edges: nodes in if/else branches depend on the condition, nodes in a for body on
+ * the compare expression (the for line itself for "for (;;)"), and nodes in try and catch
+ * blocks on the try or catch line.
+ */
+class ControlRule extends RegionRule {
+    ControlRule() {
+        super(EdgeLabel.CONTROL);
+    }
+
+    @Override
+    int anchorFor(Node parent, Node node, int line) {
+        if (parent instanceof IfStmt) {
+            IfStmt ifStmt = (IfStmt) parent;
+            if (ifStmt.getThenStmt() == node || ifStmt.getElseStmt().orElse(null) == node) {
+                return GraphAnalyzer.lineOf(ifStmt.getCondition());
+            }
+        } else if (parent instanceof ForStmt) {
+            ForStmt forStmt = (ForStmt) parent;
+            if (forStmt.getBody() == node) {
+                return GraphAnalyzer.lineOf(forStmt.getCompare().isPresent() ? forStmt.getCompare().get() : forStmt);
+            }
+        } else if (parent instanceof TryStmt) {
+            if (((TryStmt) parent).getTryBlock() == node) {
+                return GraphAnalyzer.lineOf(parent);
+            }
+        } else if (parent instanceof CatchClause) {
+            if (((CatchClause) parent).getBody() == node) {
+                return GraphAnalyzer.lineOf(parent);
+            }
+        }
+        return -1;
+    }
+}
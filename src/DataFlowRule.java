@@ -0,0 +1,85 @@
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.MethodDeclaration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * data edges from local variable usages to the definitions that can reach them, computed per
+ * method by solving reaching definitions over its {@link ControlFlowGraph}. Declarations,
+ * assignments (compound ones also use the variable) and increments are definitions;
+ * parameters and fields are never definition targets. Methods are independent, so in
+ * parallel mode they are solved concurrently; their edges are still added in method order.
+ * In lean mode each method is solved as the walk leaves it, before its body is released.
+ */
+class DataFlowRule implements EdgeRule {
+    private final List<MethodDeclaration> methods = new ArrayList<>();
+    // lean mode: the solution of each method, in the order the methods were entered
+    private final List<int[]> solved = new ArrayList<>();
+    private final Deque<Integer> open = new ArrayDeque<>();
+
+    @Override
+    public String name() {
+        return "data";
+    }
+
+    @Override
+    public void enter(Node parent, Node node, int line, AnalysisContext ctx) {
+        if (node instanceof MethodDeclaration) {
+            if (ctx.lean) {
+                open.push(solved.size());
+                solved.add(null);
+            } else {
+                methods.add((MethodDeclaration) node);
+            }
+        }
+    }
+
+    @Override
+    public void exit(Node parent, Node node, AnalysisContext ctx) {
+        if (ctx.lean && node instanceof MethodDeclaration) {
+            ctx.budget().check();
+            solved.set(open.pop(), ReachingDefinitions.dependencies(ControlFlowGraph.of((MethodDeclaration) node)));
+        }
+    }
+
+    @Override
+    public void finish(AnalysisContext ctx) {
+        if (ctx.lean) {
+            for (int[] pairs : solved) {
+                add(pairs, ctx);
+            }
+            return;
+        }
+        if (ctx.parallel) {
+            List<int[]> dependencies = methods.parallelStream()
+                    .map(method -> {
+                        FileBudget budget = ctx.budget().fork();
+                        try {
+                            budget.check();
+                            return ReachingDefinitions.dependencies(ControlFlowGraph.of(method));
+                        } finally {
+                            budget.release();
+                        }
+                    })
+                    .collect(Collectors.toList());
+            for (int[] pairs : dependencies) {
+                add(pairs, ctx);
+            }
+            return;
+        }
+        for (MethodDeclaration method : methods) {
+            ctx.budget().check();
+            add(ReachingDefinitions.dependencies(ControlFlowGraph.of(method)), ctx);
+        }
+    }
+
+    private static void add(int[] pairs, AnalysisContext ctx) {
+        for (int i = 0; i < pairs.length; i += 2) {
+            ctx.addEdge(pairs[i], pairs[i + 1], EdgeLabel.DATA);
+        }
+    }
+}
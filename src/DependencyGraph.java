@@ -1,28 +1,16 @@
-import com.github.javaparser.StaticJavaParser;
-import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.Node;
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.body.ConstructorDeclaration;
-import com.github.javaparser.ast.body.FieldDeclaration;
-import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.ast.body.VariableDeclarator;
-import com.github.javaparser.ast.expr.AssignExpr;
-import com.github.javaparser.ast.expr.MethodCallExpr;
-import com.github.javaparser.ast.expr.NameExpr;
-import com.github.javaparser.ast.expr.ObjectCreationExpr;
-import com.github.javaparser.ast.stmt.ForStmt;
-import com.github.javaparser.ast.stmt.IfStmt;
-import com.github.javaparser.ast.stmt.ReturnStmt;
-import com.github.javaparser.ast.stmt.TryStmt;
-import com.github.javaparser.ast.comments.Comment;
-import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.File;
-import java.io.FileWriter;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 public class DependencyGraph {
+    /** Bump whenever the analysis output changes; cached graphs of other versions are discarded. */
+    static final String TOOL_VERSION = "9";
+
     static class Dependency implements Comparable<Dependency> {
         private final int target;
         private final String label;
@@ -63,439 +51,343 @@ public class DependencyGraph {
     }
 
     public static void main(String[] args) throws Exception {
-        if (args.length < 1) {
-            System.err.println("Usage: java -cp <classpath> <DependecyGraph> <TargetFileName>");
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        boolean pretty = !options.remove("--compact");
+        boolean printStats = options.remove("--stats");
+        boolean binary = options.remove("--binary");
+        boolean ranges = options.remove("--ranges");
+        boolean parallel = options.remove("--parallel");
+        boolean lean = options.remove("--lean");
+        GraphForm form = options.remove("--reduce") ? GraphForm.REDUCED : ranges ? GraphForm.RANGES : GraphForm.FLAT;
+        Path statsFile = null;
+        int statsFileAt = options.indexOf("--stats-file");
+        if (statsFileAt >= 0 && statsFileAt + 1 < options.size()) {
+            statsFile = Paths.get(options.remove(statsFileAt + 1));
+            options.remove(statsFileAt);
+        }
+        AnalysisStats stats = printStats || statsFile != null ? new AnalysisStats(null) : null;
+        if (options.isEmpty()) {
+            System.err.println("Usage: java -cp <classpath> <DependecyGraph> <TargetFileName> [--compact | --binary] [--ranges | --reduce] [--parallel] [--lean] [--stats] [--stats-file <file>]");
+            System.err.println("       java -cp <classpath> <DependecyGraph> --project <sourceRoot>... "
+                    + "[--out <dir> | --merged <file>] [--links <file>] [--threads <n>] [--cache <dir> [--cache-size <MB>]] [--compact | --binary] [--ranges | --reduce] [--parallel] [--lean] "
+                    + "[--file-timeout <ms>] [--file-memory <MB>] [--degrade] [--report <file>] [--stats] [--stats-file <file>]");
+            System.err.println("       java -cp <classpath> <DependecyGraph> --daemon <sourceRoot>... "
+                    + "[--port <n>] [--threads <n>] [--cache <dir> [--cache-size <MB>]] [--parallel] [--lean] "
+                    + "[--file-timeout <ms>] [--file-memory <MB>] [--degrade]");
+            System.err.println("       java -cp <classpath> <DependecyGraph> --slice [<graph.json>] [--labels <label,...>] "
+                    + "[--backward <line> | --forward <line> | --chop <from> <to>]...");
+            System.err.println("       java -cp <classpath> <DependecyGraph> --convert <in.json|in.dgb> <out.dgb|out.json> [--compact]");
+            System.err.println("       java -cp <classpath> <DependecyGraph> --diff <old> <new> [--out <file>] [--threads <n>]");
             return;
         }
-        String javaFileName = args[0];
-        String inputFile = "../temp/" + javaFileName + ".java";
-        CompilationUnit cu = StaticJavaParser.parse(new File(inputFile));
-
-        Map<Integer, String> varDecls = new HashMap<>();
-        Map<String, Integer> methodDecls = new HashMap<>();
-        Map<String, Integer> constructorDecls = new HashMap<>();
-        Map<String, Integer> fieldDecls = new HashMap<>();
-        Map<Integer, Set<Dependency>> adjacencyList = new HashMap<>();
-
-        int maxLine = 0;
-        for (Node node : cu.findAll(Node.class)) {
-            if (node instanceof Comment) {
-                continue;
+        if (options.get(0).equals("--convert") && options.size() == 3) {
+            convert(Paths.get(options.get(1)), Paths.get(options.get(2)), pretty);
+            return;
+        }
+        if (options.get(0).equals("--diff") && options.size() >= 3) {
+            runDiff(options);
+            return;
+        }
+        if (options.get(0).equals("--slice")) {
+            runSlice(options);
+            return;
+        }
+        if (options.get(0).equals("--project") || options.get(0).equals("--daemon")) {
+            runProject(options, pretty, binary, form, parallel, lean, stats);
+        } else {
+            runFile(options.get(0), pretty, binary, form, parallel, lean, stats != null ? stats : new AnalysisStats(null));
+        }
+        if (stats != null) {
+            if (printStats) {
+                System.out.println(stats);
+            }
+            if (statsFile != null) {
+                Files.write(statsFile, stats.toJson().toString(2).getBytes(StandardCharsets.UTF_8));
             }
-            int line = node.getBegin().get().line;
-            maxLine = Math.max(maxLine, line);
-            adjacencyList.putIfAbsent(line, new HashSet<>());
         }
+    }
 
-        cu.findAll(ClassOrInterfaceDeclaration.class).forEach(clazz -> {
-            int classLine = clazz.getBegin().get().line;
-            clazz.findAll(Node.class).forEach(node -> {
-                if (node instanceof Comment) return;
-                int nodeLine = node.getBegin().get().line;
-                if (nodeLine != classLine) {
-                    adjacencyList.computeIfAbsent(nodeLine, k -> new HashSet<>());
-                    adjacencyList.get(nodeLine).add(new Dependency(classLine, "class_scope"));
-                }
-            });
-        });
-
-        cu.findAll(MethodDeclaration.class).forEach(method -> {
-            int methodLine = method.getBegin().get().line;
-            methodDecls.put(method.getNameAsString(), methodLine);
-            method.findAll(Node.class).forEach(node -> {
-                if (node instanceof Comment) return;
-                int nodeLine = node.getBegin().get().line;
-                if (nodeLine != methodLine) {
-                    adjacencyList.computeIfAbsent(nodeLine, k -> new HashSet<>());
-                    adjacencyList.get(nodeLine).add(new Dependency(methodLine, "method_scope"));
+    private static void runFile(String javaFileName, boolean pretty, boolean binary, GraphForm form, boolean parallel,
+                                boolean lean, AnalysisStats stats) throws Exception {
+        String inputFile = "../temp/" + javaFileName + ".java";
+        AnalysisStats fileStats = new AnalysisStats(inputFile);
+        CompactGraph graph = DependencyGraphAnalyzer.builder().form(form).threads(1).parallelPhases(parallel).lean(lean).build()
+                .analyze(Paths.get(inputFile), fileStats);
+
+        String outputFile = binary ? "dependencies.dgb" : "dependencies.json";
+        AnalysisStats.Timer jsonTimer = fileStats.time("json");
+        try {
+            if (binary) {
+                GraphBinaryWriter.write(graph, Paths.get("../temp", outputFile));
+            } else {
+                try (Writer writer = Files.newBufferedWriter(Paths.get("../temp", outputFile))) {
+                    new GraphJsonWriter(writer, pretty).write(graph);
                 }
-            });
-        });
-
-        cu.findAll(ConstructorDeclaration.class).forEach(constructor -> {
-            int constructorLine = constructor.getBegin().get().line;
-            String className = constructor.findAncestor(ClassOrInterfaceDeclaration.class)
-                    .map(ClassOrInterfaceDeclaration::getNameAsString)
-                    .orElse("");
-            constructorDecls.put(className, constructorLine);
-        });
-
-        cu.findAll(FieldDeclaration.class).forEach(field -> {
-            field.getVariables().forEach(var -> {
-                int fieldLine = var.getBegin().get().line;
-                fieldDecls.put(var.getNameAsString(), fieldLine);
-            });
-        });
-
-        cu.findAll(VariableDeclarator.class).forEach(var -> {
-            if (!(var.getParentNode().get() instanceof FieldDeclaration)) {
-                int line = var.getBegin().get().line;
-                varDecls.put(line, var.getNameAsString());
             }
-        });
-
-        cu.findAll(MethodDeclaration.class).forEach(method -> {
-            Map<String, Set<Integer>> possibleDefinitions = new HashMap<>();
-            method.findAll(VariableDeclarator.class).forEach(var -> {
-                if (!(var.getParentNode().get() instanceof FieldDeclaration)) {
-                    String varName = var.getNameAsString();
-                    int line = var.getBegin().get().line;
-                    possibleDefinitions.computeIfAbsent(varName, k -> new HashSet<>()).add(line);
-                }
-            });
-
-            List<Node> nodes = new ArrayList<>();
-            method.findAll(Node.class).forEach(node -> {
-                if (!(node instanceof Comment)) {
-                    nodes.add(node);
-                }
-            });
-            nodes.sort((n1, n2) -> Integer.compare(n1.getBegin().get().line, n2.getBegin().get().line));
-
-            Map<Node, Map<String, Set<Integer>>> branchDefinitions = new HashMap<>();
-
-            for (Node node : nodes) {
-                int line = node.getBegin().get().line;
-
-                if (node instanceof VariableDeclarator) {
-                    VariableDeclarator var = (VariableDeclarator) node;
-                    if (!(var.getParentNode().get() instanceof FieldDeclaration)) {
-                        String varName = var.getNameAsString();
-                        possibleDefinitions.computeIfAbsent(varName, k -> new HashSet<>()).add(line);
-                    }
-                }
-
-                if (node instanceof AssignExpr) {
-                    AssignExpr assign = (AssignExpr) node;
-                    String varName = assign.getTarget().toString();
-                    if (!fieldDecls.containsKey(varName)) {
-                        IfStmt parentIfStmt = assign.findAncestor(IfStmt.class).orElse(null);
-                        if (parentIfStmt != null) {
-                            branchDefinitions.computeIfAbsent(parentIfStmt, k -> new HashMap<>())
-                                    .computeIfAbsent(varName, k -> new HashSet<>()).add(line);
-                        } else {
-                            possibleDefinitions.computeIfAbsent(varName, k -> new HashSet<>()).clear();
-                            possibleDefinitions.get(varName).add(line);
-                        }
-                    }
-                }
-
-                if (node instanceof IfStmt) {
-                    IfStmt ifStmt = (IfStmt) node;
-                    int ifLine = ifStmt.getBegin().get().line;
-                    Map<String, Set<Integer>> ifBranchDefs = branchDefinitions.getOrDefault(ifStmt, new HashMap<>());
-
-                    // Merge definitions from then branch
-                    ifStmt.getThenStmt().findAll(AssignExpr.class).forEach(assign -> {
-                        String varName = assign.getTarget().toString();
-                        if (!fieldDecls.containsKey(varName)) {
-                            int assignLine = assign.getBegin().get().line;
-                            possibleDefinitions.computeIfAbsent(varName, k -> new HashSet<>()).add(assignLine);
-                        }
-                    });
-
-                    // Merge definitions from else branch if present
-                    ifStmt.getElseStmt().ifPresent(elseStmt -> {
-                        elseStmt.findAll(AssignExpr.class).forEach(assign -> {
-                            String varName = assign.getTarget().toString();
-                            if (!fieldDecls.containsKey(varName)) {
-                                int assignLine = assign.getBegin().get().line;
-                                possibleDefinitions.computeIfAbsent(varName, k -> new HashSet<>()).add(assignLine);
-                            }
-                        });
-                    });
+        } finally {
+            jsonTimer.close();
+        }
+        stats.merge(fileStats);
 
-                    // Remove declaration dependency if assignments exist
-                    for (String varName : possibleDefinitions.keySet()) {
-                        Set<Integer> defs = possibleDefinitions.get(varName);
-                        if (defs.size() > 1 || (defs.size() == 1 && !defs.contains(varDecls.entrySet().stream()
-                                .filter(e -> e.getValue().equals(varName))
-                                .map(Map.Entry::getKey)
-                                .findFirst().orElse(-1)))) {
-                            defs.removeIf(def -> varDecls.containsKey(def) && varDecls.get(def).equals(varName));
-                        }
-                    }
+        System.out.println("Graph saved to " + outputFile);
+    }
 
-                    branchDefinitions.remove(ifStmt);
-                }
+    /** Converts a graph between the JSON and binary formats, in the direction the extensions give. */
+    private static void convert(Path in, Path out, boolean pretty) throws Exception {
+        CompactGraph graph = in.toString().endsWith(".dgb")
+                ? MappedGraph.open(in).toCompactGraph() : GraphJsonReader.read(in);
+        if (out.toString().endsWith(".dgb")) {
+            GraphBinaryWriter.write(graph, out);
+        } else {
+            try (Writer writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+                new GraphJsonWriter(writer, pretty).write(graph);
+            }
+        }
+    }
 
-                if (node instanceof NameExpr) {
-                    NameExpr nameExpr = (NameExpr) node;
-                    String varName = nameExpr.getNameAsString();
-                    if (!fieldDecls.containsKey(varName)) {
-                        Set<Integer> defLines = possibleDefinitions.getOrDefault(varName, new HashSet<>());
-                        for (Integer defLine : defLines) {
-                            if (defLine < line) {
-                                adjacencyList.computeIfAbsent(line, k -> new HashSet<>());
-                                adjacencyList.get(line).add(new Dependency(defLine, "data"));
-                            }
-                        }
+    /**
+     * Answers slice queries over a written graph, one JSON array of lines per query. Queries
+     * come from the arguments or, when there are none, from standard input, one per line
+     * ("backward 12", "forward 12" or "chop 3 20").
+     */
+    private static void runSlice(List<String> args) throws Exception {
+        Path graphFile = Paths.get("../temp/dependencies.json");
+        Collection<EdgeLabel> labels = SliceIndex.ALL;
+        List<String[]> queries = new ArrayList<>();
+        for (int i = 1; i < args.size(); i++) {
+            switch (args.get(i)) {
+                case "--labels":
+                    labels = EnumSet.noneOf(EdgeLabel.class);
+                    for (String label : args.get(++i).split(",")) {
+                        labels.add(EdgeLabel.fromText(label.trim()));
                     }
-                }
+                    break;
+                case "--backward":
+                case "--forward":
+                    queries.add(new String[]{args.get(i).substring(2), args.get(++i)});
+                    break;
+                case "--chop":
+                    queries.add(new String[]{"chop", args.get(++i), args.get(++i)});
+                    break;
+                default:
+                    graphFile = Paths.get(args.get(i));
             }
-        });
+        }
 
-        cu.findAll(MethodDeclaration.class).forEach(method -> {
-            Map<String, Integer> methodFieldAssignments = new HashMap<>();
-            method.findAll(AssignExpr.class).forEach(assign -> {
-                String target = assign.getTarget().toString();
-                if (target.startsWith("this.")) {
-                    String fieldName = target.substring(5);
-                    if (fieldDecls.containsKey(fieldName)) {
-                        int assignLine = assign.getBegin().get().line;
-                        methodFieldAssignments.put(fieldName, assignLine);
-                    }
+        SliceIndex index = new SliceIndex(GraphJsonReader.read(graphFile));
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        if (!queries.isEmpty()) {
+            for (String[] query : queries) {
+                out.println(Arrays.toString(slice(index, query, labels)).replace(" ", ""));
+            }
+        } else {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (!line.trim().isEmpty()) {
+                    out.println(Arrays.toString(slice(index, line.trim().split("\\s+"), labels)).replace(" ", ""));
                 }
-            });
+            }
+        }
+        out.flush();
+    }
 
-            method.findAll(NameExpr.class).forEach(nameExpr -> {
-                String varName = nameExpr.getNameAsString();
-                int usageLine = nameExpr.getBegin().get().line;
-                if (fieldDecls.containsKey(varName)) {
-                    ClassOrInterfaceDeclaration clazz = nameExpr.findAncestor(ClassOrInterfaceDeclaration.class).orElse(null);
-                    if (clazz != null) {
-                        String className = clazz.getNameAsString();
-                        Integer fieldLine = fieldDecls.get(varName);
-                        if (methodFieldAssignments.containsKey(varName)) {
-                            int assignLine = methodFieldAssignments.get(varName);
-                            if (usageLine != assignLine) {
-                                adjacencyList.computeIfAbsent(usageLine, k -> new HashSet<>());
-                                adjacencyList.get(usageLine).add(new Dependency(assignLine, "data"));
-                            }
-                        } else {
-                            Integer constructorLine = constructorDecls.get(className);
-                            if (constructorLine != null) {
-                                ConstructorDeclaration constructor = cu.findAll(ConstructorDeclaration.class).stream()
-                                        .filter(c -> c.getBegin().get().line == constructorLine)
-                                        .findFirst()
-                                        .orElse(null);
-                                if (constructor != null) {
-                                    boolean foundAssignment = false;
-                                    for (AssignExpr assign : constructor.findAll(AssignExpr.class)) {
-                                        if (assign.getTarget().toString().equals("this." + varName)) {
-                                            int assignLine = assign.getBegin().get().line;
-                                            if (usageLine != assignLine) {
-                                                adjacencyList.computeIfAbsent(usageLine, k -> new HashSet<>());
-                                                adjacencyList.get(usageLine).add(new Dependency(assignLine, "data"));
-                                            }
-                                            foundAssignment = true;
-                                            break;
-                                        }
-                                    }
-                                    if (!foundAssignment && fieldLine != null && usageLine != fieldLine) {
-                                        adjacencyList.computeIfAbsent(usageLine, k -> new HashSet<>());
-                                        adjacencyList.get(usageLine).add(new Dependency(fieldLine, "data"));
-                                    }
-                                }
-                            } else if (fieldLine != null && usageLine != fieldLine) {
-                                adjacencyList.computeIfAbsent(usageLine, k -> new HashSet<>());
-                                adjacencyList.get(usageLine).add(new Dependency(fieldLine, "data"));
-                            }
-                        }
-                    }
-                }
-            });
-        });
+    private static int[] slice(SliceIndex index, String[] query, Collection<EdgeLabel> labels) {
+        switch (query[0]) {
+            case "backward":
+                return index.backward(Integer.parseInt(query[1]), labels);
+            case "forward":
+                return index.forward(Integer.parseInt(query[1]), labels);
+            case "chop":
+                return index.chop(Integer.parseInt(query[1]), Integer.parseInt(query[2]), labels);
+            default:
+                throw new IllegalArgumentException("Unknown slice query: " + String.join(" ", query));
+        }
+    }
 
-        cu.findAll(ObjectCreationExpr.class).forEach(creation -> {
-            int creationLine = creation.getBegin().get().line;
-            String className = creation.getTypeAsString();
-            cu.findAll(ClassOrInterfaceDeclaration.class).forEach(clazz -> {
-                if (clazz.getNameAsString().equals(className)) {
-                    int classLine = clazz.getBegin().get().line;
-                    adjacencyList.computeIfAbsent(creationLine, k -> new HashSet<>());
-                    adjacencyList.get(creationLine).add(new Dependency(classLine, "class_instantiation"));
-                }
-            });
-            Integer constructorLine = constructorDecls.get(className);
-            if (constructorLine != null) {
-                adjacencyList.computeIfAbsent(creationLine, k -> new HashSet<>());
-                adjacencyList.get(creationLine).add(new Dependency(constructorLine, "constructor_call"));
+    /**
+     * Writes the edges that differ between two revisions of a source file, or of a source tree
+     * (files are paired by path relative to the roots). Files with identical content are not
+     * analysed at all; the others are analysed in both revisions and compared with
+     * {@link GraphDiff}, so edges that only moved with their lines are not reported.
+     */
+    private static void runDiff(List<String> args) throws Exception {
+        Path oldRoot = Paths.get(args.get(1));
+        Path newRoot = Paths.get(args.get(2));
+        Path outputFile = Paths.get("../temp/diff.json");
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 3; i < args.size(); i++) {
+            switch (args.get(i)) {
+                case "--out":
+                    outputFile = Paths.get(args.get(++i));
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args.get(++i));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown diff option: " + args.get(i));
             }
-        });
+        }
 
-        cu.findAll(MethodCallExpr.class).forEach(call -> {
-            int callerLine = call.getBegin().get().line;
-            String methodName = call.getNameAsString();
-            Integer methodLine = methodDecls.get(methodName);
-            if (methodLine != null && callerLine != methodLine) {
-                if (!call.getArguments().isEmpty()) {
-                    adjacencyList.computeIfAbsent(callerLine, k -> new HashSet<>());
-                    adjacencyList.get(callerLine).add(new Dependency(methodLine, "parameter-in"));
-                } else {
-                    adjacencyList.computeIfAbsent(callerLine, k -> new HashSet<>());
-                    adjacencyList.get(callerLine).add(new Dependency(methodLine, "call"));
+        Map<String, Path[]> revisions = new TreeMap<>();
+        if (Files.isRegularFile(oldRoot) && Files.isRegularFile(newRoot)) {
+            revisions.put(newRoot.getFileName().toString(), new Path[]{oldRoot, newRoot});
+        } else {
+            for (int side = 0; side < 2; side++) {
+                Path root = side == 0 ? oldRoot : newRoot;
+                for (ProjectAnalyzer.SourceFile source : ProjectAnalyzer.discover(Collections.singletonList(root))) {
+                    revisions.computeIfAbsent(source.key, k -> new Path[2])[side] = source.path;
                 }
-
-                call.getArguments().forEach(arg -> {
-                    arg.findAll(NameExpr.class).forEach(param -> {
-                        String paramName = param.getNameAsString();
-                        MethodDeclaration method = call.findAncestor(MethodDeclaration.class).orElse(null);
-                        if (method != null) {
-                            Map<String, Set<Integer>> possibleDefinitions = new HashMap<>();
-                            method.findAll(VariableDeclarator.class).forEach(var -> {
-                                if (!(var.getParentNode().get() instanceof FieldDeclaration)) {
-                                    String varName = var.getNameAsString();
-                                    int line = var.getBegin().get().line;
-                                    possibleDefinitions.computeIfAbsent(varName, k -> new HashSet<>()).add(line);
-                                }
-                            });
-
-                            List<Node> nodes = new ArrayList<>();
-                            method.findAll(Node.class).forEach(node -> {
-                                if (!(node instanceof Comment)) {
-                                    nodes.add(node);
-                                }
-                            });
-                            nodes.sort((n1, n2) -> Integer.compare(n1.getBegin().get().line, n2.getBegin().get().line));
-
-                            Map<Node, Map<String, Set<Integer>>> branchDefinitions = new HashMap<>();
-                            for (Node node : nodes) {
-                                int line = node.getBegin().get().line;
-                                if (line >= callerLine) break;
-
-                                if (node instanceof AssignExpr) {
-                                    AssignExpr assign = (AssignExpr) node;
-                                    String varName = assign.getTarget().toString();
-                                    if (!fieldDecls.containsKey(varName)) {
-                                        IfStmt parentIfStmt = assign.findAncestor(IfStmt.class).orElse(null);
-                                        if (parentIfStmt != null) {
-                                            branchDefinitions.computeIfAbsent(parentIfStmt, k -> new HashMap<>())
-                                                    .computeIfAbsent(varName, k -> new HashSet<>()).add(line);
-                                        } else {
-                                            possibleDefinitions.computeIfAbsent(varName, k -> new HashSet<>()).clear();
-                                            possibleDefinitions.get(varName).add(line);
-                                        }
-                                    }
-                                }
-
-                                if (node instanceof IfStmt) {
-                                    IfStmt ifStmt = (IfStmt) node;
-                                    Map<String, Set<Integer>> ifBranchDefs = branchDefinitions.getOrDefault(ifStmt, new HashMap<>());
-                                    for (String varName : possibleDefinitions.keySet()) {
-                                        Set<Integer> thenDefs = ifBranchDefs.getOrDefault(varName, new HashSet<>());
-                                        if (!thenDefs.isEmpty()) {
-                                            possibleDefinitions.get(varName).addAll(thenDefs);
-                                        }
-                                    }
-                                    if (ifStmt.getElseStmt().isPresent()) {
-                                        for (String varName : possibleDefinitions.keySet()) {
-                                            Set<Integer> elseDefs = ifBranchDefs.getOrDefault(varName, new HashSet<>());
-                                            if (!elseDefs.isEmpty()) {
-                                                possibleDefinitions.get(varName).addAll(elseDefs);
-                                            }
-                                        }
-                                    }
-                                    branchDefinitions.remove(ifStmt);
-                                }
-                            }
-
-                            Set<Integer> defLines = possibleDefinitions.getOrDefault(paramName, new HashSet<>());
-                            for (Integer defLine : defLines) {
-                                if (defLine != callerLine) {
-                                    adjacencyList.computeIfAbsent(callerLine, k -> new HashSet<>());
-                                    adjacencyList.get(callerLine).add(new Dependency(defLine, "data"));
-                                }
-                            }
-                        }
-                    });
-                });
             }
-        });
-
-        cu.findAll(ReturnStmt.class).forEach(returnStmt -> {
-            int returnLine = returnStmt.getBegin().get().line;
-            MethodDeclaration method = returnStmt.findAncestor(MethodDeclaration.class).orElse(null);
-            if (method != null) {
-                String methodName = method.getNameAsString();
-                cu.findAll(MethodCallExpr.class).forEach(call -> {
-                    if (call.getNameAsString().equals(methodName)) {
-                        int callerLine = call.getBegin().get().line;
-                        adjacencyList.computeIfAbsent(callerLine, k -> new HashSet<>());
-                        adjacencyList.get(callerLine).add(new Dependency(returnLine, "parameter-out"));
-                    }
-                });
+        }
+        Map<String, String[]> sources = new TreeMap<>();
+        List<Path> changed = new ArrayList<>();
+        int unchanged = 0;
+        for (Map.Entry<String, Path[]> entry : revisions.entrySet()) {
+            Path[] paths = entry.getValue();
+            byte[] oldBytes = paths[0] != null ? Files.readAllBytes(paths[0]) : new byte[0];
+            byte[] newBytes = paths[1] != null ? Files.readAllBytes(paths[1]) : new byte[0];
+            if (Arrays.equals(oldBytes, newBytes)) {
+                unchanged++;
+                continue;
             }
-        });
-
-        cu.findAll(IfStmt.class).forEach(ifStmt -> {
-            int conditionLine = ifStmt.getCondition().getBegin().get().line;
-            ifStmt.getThenStmt().findAll(Node.class).forEach(thenNode -> {
-                if (thenNode instanceof Comment) return;
-                int thenLine = thenNode.getBegin().get().line;
-                if (conditionLine != thenLine) {
-                    adjacencyList.computeIfAbsent(thenLine, k -> new HashSet<>());
-                    adjacencyList.get(thenLine).add(new Dependency(conditionLine, "control"));
+            sources.put(entry.getKey(), new String[]{
+                    new String(oldBytes, StandardCharsets.UTF_8), new String(newBytes, StandardCharsets.UTF_8)});
+            for (Path path : paths) {
+                if (path != null) {
+                    changed.add(path);
                 }
-            });
-            ifStmt.getElseStmt().ifPresent(elseStmt -> {
-                elseStmt.findAll(Node.class).forEach(elseNode -> {
-                    if (elseNode instanceof Comment) return;
-                    int elseLine = elseNode.getBegin().get().line;
-                    if (conditionLine != elseLine) {
-                        adjacencyList.computeIfAbsent(elseLine, k -> new HashSet<>());
-                        adjacencyList.get(elseLine).add(new Dependency(conditionLine, "control"));
+            }
+        }
+
+        Map<Path, DependencyGraphAnalyzer.Result> results = new HashMap<>();
+        for (DependencyGraphAnalyzer.Result result : DependencyGraphAnalyzer.builder().threads(threads).build().analyzeAll(changed)) {
+            results.put(result.source, result);
+        }
+        int failed = 0;
+        int added = 0;
+        int removed = 0;
+        try (Writer out = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8)) {
+            out.write('{');
+            boolean first = true;
+            for (Map.Entry<String, String[]> entry : sources.entrySet()) {
+                Path[] paths = revisions.get(entry.getKey());
+                DependencyGraphAnalyzer.Result before = paths[0] != null ? results.get(paths[0]) : null;
+                DependencyGraphAnalyzer.Result after = paths[1] != null ? results.get(paths[1]) : null;
+                String failure = before != null && before.failure != null ? before.failure
+                        : after != null && after.failure != null ? after.failure : null;
+                GraphDiff diff = null;
+                if (failure != null) {
+                    failed++;
+                } else {
+                    diff = GraphDiff.between(before != null ? before.graph : null, after != null ? after.graph : null,
+                            LineAlignment.of(entry.getValue()[0], entry.getValue()[1]));
+                    if (diff.isEmpty()) {
+                        continue;
                     }
-                });
-            });
-        });
-        cu.findAll(ForStmt.class).forEach(forStmt -> {
-            int conditionLine = forStmt.getCompare().get().getBegin().get().line;
-            forStmt.getBody().findAll(Node.class).forEach(bodyNode -> {
-                if (bodyNode instanceof Comment) return;
-                int bodyLine = bodyNode.getBegin().get().line;
-                if (conditionLine != bodyLine) {
-                    adjacencyList.computeIfAbsent(bodyLine, k -> new HashSet<>());
-                    adjacencyList.get(bodyLine).add(new Dependency(conditionLine, "control"));
+                    added += diff.added.size();
+                    removed += diff.removed.size();
                 }
-            });
-        });
-        cu.findAll(TryStmt.class).forEach(tryStmt -> {
-            int tryLine = tryStmt.getBegin().get().line;
-            tryStmt.getTryBlock().findAll(Node.class).forEach(tryNode -> {
-                if (tryNode instanceof Comment) return;
-                int tryBodyLine = tryNode.getBegin().get().line;
-                if (tryLine != tryBodyLine) {
-                    adjacencyList.computeIfAbsent(tryBodyLine, k -> new HashSet<>());
-                    adjacencyList.get(tryBodyLine).add(new Dependency(tryLine, "control"));
+                out.write(first ? "\n  " : ",\n  ");
+                first = false;
+                out.write(JSONObject.quote(entry.getKey()) + ": ");
+                if (diff != null) {
+                    diff.write(out);
+                } else {
+                    out.write("{\"failure\": " + JSONObject.quote(failure) + "}");
                 }
-            });
-            for (com.github.javaparser.ast.stmt.CatchClause catchClause : tryStmt.getCatchClauses()) {
-                int catchLine = catchClause.getBegin().get().line;
-                catchClause.getBody().findAll(Node.class).forEach(catchNode -> {
-                    if (catchNode instanceof Comment) return;
-                    int catchBodyLine = catchNode.getBegin().get().line;
-                    if (catchLine != catchBodyLine) {
-                        adjacencyList.computeIfAbsent(catchBodyLine, k -> new HashSet<>());
-                        adjacencyList.get(catchBodyLine).add(new Dependency(catchLine, "control"));
-                    }
-                });
             }
-        });
+            out.write(first ? "}\n" : "\n}\n");
+        }
+        System.out.printf("Compared %d files (%d unchanged, %d failed): %d edges added, %d removed%n",
+                revisions.size(), unchanged, failed, added, removed);
+        System.out.println("Diff saved to " + outputFile);
+    }
 
-        JSONObject graph = new JSONObject();
-        List<Integer> sortedLines = new ArrayList<>(adjacencyList.keySet());
-        Collections.sort(sortedLines);
-        for (Integer line : sortedLines) {
-            Set<Dependency> deps = adjacencyList.get(line);
-            if (!deps.isEmpty()) {
-                JSONArray dependencies = new JSONArray();
-                List<Dependency> sortedDeps = new ArrayList<>(deps);
-                Collections.sort(sortedDeps);
-                for (Dependency dep : sortedDeps) {
-                    JSONObject dependency = new JSONObject();
-                    dependency.put("target", String.valueOf(dep.getTarget()));
-                    dependency.put("label", dep.getLabel());
-                    dependencies.put(dependency);
-                }
-                graph.put(String.valueOf(line), dependencies);
+    private static void runProject(List<String> args, boolean pretty, boolean binary, GraphForm form, boolean parallel,
+                                   boolean lean, AnalysisStats stats) throws Exception {
+        List<Path> roots = new ArrayList<>();
+        Path outputDir = Paths.get("../temp/graphs");
+        Path mergedFile = null;
+        Path linksFile = null;
+        Path reportFile = null;
+        long fileTimeout = 0;
+        long fileMemory = 0;
+        boolean degrade = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int port = 7878;
+        Path cacheDir = null;
+        long cacheMegabytes = 256;
+        for (int i = 1; i < args.size(); i++) {
+            switch (args.get(i)) {
+                case "--out":
+                    outputDir = Paths.get(args.get(++i));
+                    break;
+                case "--merged":
+                    mergedFile = Paths.get(args.get(++i));
+                    break;
+                case "--links":
+                    linksFile = Paths.get(args.get(++i));
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args.get(++i));
+                    break;
+                case "--file-timeout":
+                    fileTimeout = Long.parseLong(args.get(++i));
+                    break;
+                case "--file-memory":
+                    fileMemory = Long.parseLong(args.get(++i));
+                    break;
+                case "--degrade":
+                    degrade = true;
+                    break;
+                case "--report":
+                    reportFile = Paths.get(args.get(++i));
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args.get(++i));
+                    break;
+                case "--cache":
+                    cacheDir = Paths.get(args.get(++i));
+                    break;
+                case "--cache-size":
+                    cacheMegabytes = Long.parseLong(args.get(++i));
+                    break;
+                default:
+                    roots.add(Paths.get(args.get(i)));
             }
         }
 
-        try (FileWriter writer = new FileWriter("../temp/dependencies.json")) {
-            writer.write(graph.toString(2));
+        GraphCache cache = cacheDir != null ? new GraphCache(cacheDir, cacheMegabytes << 20) : null;
+        if (args.get(0).equals("--daemon")) {
+            new GraphDaemon(roots).run(port, new ProjectAnalyzer(threads, cache, null, GraphForm.FLAT, null, parallel, lean)
+                    .budget(fileTimeout, fileMemory, degrade));
+            return;
         }
 
-        System.out.println("Graph saved to dependencies.json");
+        if (binary && mergedFile != null) {
+            System.err.println("--binary writes one file per source and cannot be combined with --merged");
+            return;
+        }
+        List<ProjectAnalyzer.SourceFile> sources = ProjectAnalyzer.discover(roots);
+        CallLinker linker = linksFile != null ? new CallLinker() : null;
+        ProjectAnalyzer.Summary summary;
+        try (GraphSink sink = mergedFile != null ? new MergedJsonSink(mergedFile, pretty) : new PerFileSink(outputDir, pretty, binary)) {
+            summary = new ProjectAnalyzer(threads, cache, stats, form, linker, parallel, lean)
+                    .budget(fileTimeout, fileMemory, degrade)
+                    .analyze(sources, sink);
+        }
+        System.out.println(summary);
+        if (reportFile != null) {
+            summary.report.write(reportFile, 20);
+            System.out.println("Report saved to " + reportFile);
+        }
+        System.out.println("Graphs saved to " + (mergedFile != null ? mergedFile : outputDir));
+        if (linker != null) {
+            long start = System.nanoTime();
+            List<CallLinker.Link> links = linker.link();
+            CallLinker.write(links, linksFile);
+            System.out.printf("Linked %d cross-file edges in %.2f s, saved to %s%n",
+                    links.size(), (System.nanoTime() - start) / 1e9, linksFile);
+        }
     }
-}
\ No newline at end of file
+}
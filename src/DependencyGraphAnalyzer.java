@@ -0,0 +1,180 @@
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * In-process entry point for building dependency graphs, for callers that cannot afford a
+ * JVM per file. The tool lives in the unnamed package, so only code compiled into that
+ * package alongside it can use this class. Instances are immutable and safe to share between
+ * threads: every call runs its own analysis, and parsers come from a shared
+ * {@link ParserPool} rather than {@code StaticJavaParser}.
+ *
+ * <pre>
+ * DependencyGraphAnalyzer analyzer = DependencyGraphAnalyzer.builder().threads(8).build();
+ * CompactGraph graph = analyzer.analyze(Paths.get("Foo.java"));
+ * List&lt;DependencyGraphAnalyzer.Result&gt; results = analyzer.analyzeAll(files);
+ * </pre>
+ */
+public final class DependencyGraphAnalyzer {
+    private final ParserPool parsers;
+    private final GraphForm form;
+    private final int threads;
+    private final boolean parallelPhases;
+    private final boolean lean;
+
+    private DependencyGraphAnalyzer(Builder builder) {
+        this.parsers = builder.lean
+                ? new ParserPool(LeanTree.configuration(builder.configuration), 0)
+                : new ParserPool(builder.configuration, builder.threads);
+        this.form = builder.form;
+        this.threads = builder.threads;
+        this.parallelPhases = builder.parallelPhases;
+        this.lean = builder.lean;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private ParserConfiguration configuration = new ParserConfiguration();
+        private GraphForm form = GraphForm.FLAT;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private boolean parallelPhases;
+        private boolean lean;
+
+        private Builder() {
+        }
+
+        /** Parser settings shared by every parse; must not be changed after {@link #build}. */
+        public Builder configuration(ParserConfiguration configuration) {
+            this.configuration = configuration;
+            return this;
+        }
+
+        public Builder form(GraphForm form) {
+            this.form = form;
+            return this;
+        }
+
+        /** Threads {@link #analyzeAll} runs on, and the number of idle parsers kept. */
+        public Builder threads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be positive: " + threads);
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Runs the analysis passes of each file concurrently, for very large files. The graphs
+         * are identical either way.
+         */
+        public Builder parallelPhases(boolean parallelPhases) {
+            this.parallelPhases = parallelPhases;
+            return this;
+        }
+
+        /**
+         * Bounds memory for very large files: comments are not attributed (the parsers use a
+         * copy of the {@link #configuration}), and each tree is released while it is analysed,
+         * so peak heap follows the graph rather than the tree. The graphs are identical either way.
+         */
+        public Builder lean(boolean lean) {
+            this.lean = lean;
+            return this;
+        }
+
+        public DependencyGraphAnalyzer build() {
+            return new DependencyGraphAnalyzer(this);
+        }
+    }
+
+    /** The outcome for one source of a batch: either its graph or why it failed. */
+    public static final class Result {
+        public final Path source;
+        public final CompactGraph graph;
+        public final String failure;
+
+        private Result(Path source, CompactGraph graph, String failure) {
+            this.source = source;
+            this.graph = graph;
+            this.failure = failure;
+        }
+    }
+
+    /** Analyses a source file, read in the configured character encoding. */
+    public CompactGraph analyze(Path file) throws IOException {
+        return analyze(file, new AnalysisStats(file.toString()));
+    }
+
+    public CompactGraph analyze(String source) {
+        return analyze(new StringReader(source));
+    }
+
+    public CompactGraph analyze(Reader source) {
+        return analyze(source, new AnalysisStats(null));
+    }
+
+    CompactGraph analyze(Path file, AnalysisStats stats) throws IOException {
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file),
+                parsers.configuration().getCharacterEncoding())) {
+            return analyze(reader, stats);
+        }
+    }
+
+    /** Analyses {@code source}, recording the parse and analysis phases into {@code stats}. */
+    CompactGraph analyze(Reader source, AnalysisStats stats) {
+        CompilationUnit cu;
+        AnalysisStats.Timer parseTimer = stats.time("parse");
+        try {
+            cu = parsers.parse(source);
+        } finally {
+            parseTimer.close();
+        }
+        return form.present(new GraphAnalyzer(form.ranged(), parallelPhases, lean).analyze(cu, stats));
+    }
+
+    /**
+     * Analyses every file on at most {@link Builder#threads} threads and returns the results in
+     * the order of {@code files}. While the executor's queue is full, the next file is analysed
+     * on the calling thread, so arbitrarily long batches never queue more than a few tasks per
+     * thread.
+     */
+    public List<Result> analyzeAll(List<Path> files) throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+        List<Future<Result>> pending = new ArrayList<>(files.size());
+        try {
+            for (Path file : files) {
+                pending.add(executor.submit(() -> {
+                    try {
+                        return new Result(file, analyze(file), null);
+                    } catch (Exception | StackOverflowError e) {
+                        return new Result(file, null, ProjectAnalyzer.firstLine(e));
+                    }
+                }));
+            }
+            List<Result> results = new ArrayList<>(files.size());
+            for (Future<Result> result : pending) {
+                try {
+                    results.add(result.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * The kinds of dependency edge, in the byte-sized form the graph stores them in.
+ */
+public enum EdgeLabel {
+    CLASS_SCOPE("class_scope"),
+    METHOD_SCOPE("method_scope"),
+    DATA("data"),
+    CONTROL("control"),
+    CALL("call"),
+    PARAMETER_IN("parameter-in"),
+    PARAMETER_OUT("parameter-out"),
+    CONSTRUCTOR_CALL("constructor_call"),
+    CLASS_INSTANTIATION("class_instantiation");
+
+    private static final EdgeLabel[] VALUES = values();
+
+    private final String text;
+
+    EdgeLabel(String text) {
+        this.text = text;
+    }
+
+    /** The label as written to dependencies.json. */
+    public String text() {
+        return text;
+    }
+
+    byte code() {
+        return (byte) ordinal();
+    }
+
+    static EdgeLabel fromCode(int code) {
+        return VALUES[code];
+    }
+
+    static EdgeLabel fromText(String text) {
+        for (EdgeLabel label : VALUES) {
+            if (label.text.equals(text)) {
+                return label;
+            }
+        }
+        throw new IllegalArgumentException("Unknown edge label: " + text);
+    }
+}
@@ -0,0 +1,20 @@
+import com.github.javaparser.ast.Node;
+
+/**
+ * A pluggable producer of dependency edges. Rules see every non-comment node once while
+ * {@link GraphAnalyzer} walks the tree, and are finished in registration order afterwards,
+ * once all declarations in the file are known.
+ */
+interface EdgeRule {
+    /** Short name used in statistics and profiling events. */
+    String name();
+
+    default void enter(Node parent, Node node, int line, AnalysisContext ctx) {
+    }
+
+    default void exit(Node parent, Node node, AnalysisContext ctx) {
+    }
+
+    default void finish(AnalysisContext ctx) {
+    }
+}
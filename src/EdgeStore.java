@@ -0,0 +1,146 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Append-only edge store used while a graph is being built. Edges are kept in insertion
+ * order in parallel primitive arrays and deduplicated on insert through an open-addressing
+ * table of packed (from, to, label) keys. {@link #freeze} turns the store into a
+ * {@link CompactGraph}. A store also serves as the private buffer of a rule finishing on
+ * another thread; {@link #addAll} then appends it in order.
+ */
+class EdgeStore {
+    private static final int MAX_LINE = (1 << 28) - 1;
+    private static final long EMPTY = -1L;
+
+    private int[] from = new int[1024];
+    private int[] to = new int[1024];
+    private byte[] labels = new byte[1024];
+    private int size;
+
+    private long[] keys = newTable(2048);
+    private int duplicates;
+
+    // start, end, anchor, label code of each region of a range-encoded graph
+    private int[] regions = new int[0];
+    private int regionCount;
+
+    /** Adds an edge unless it is already present; returns whether it was new. */
+    boolean add(int fromLine, int toLine, EdgeLabel label) {
+        if (fromLine < 0 || fromLine > MAX_LINE || toLine < 0 || toLine > MAX_LINE) {
+            throw new IllegalArgumentException("Line out of range: " + fromLine + " -> " + toLine);
+        }
+        long key = ((long) fromLine << 32) | ((long) toLine << 4) | label.code();
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                duplicates++;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+
+        if (size == from.length) {
+            from = Arrays.copyOf(from, size * 2);
+            to = Arrays.copyOf(to, size * 2);
+            labels = Arrays.copyOf(labels, size * 2);
+        }
+        from[size] = fromLine;
+        to[size] = toLine;
+        labels[size] = label.code();
+        size++;
+        if (size * 2 > keys.length) {
+            rehash();
+        }
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Number of add() calls that were rejected as already present. */
+    int duplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Adds the edges and regions of {@code other} in its insertion order, as if they had been
+     * added here directly. Edges {@code other} rejected as duplicates stay counted there.
+     */
+    void addAll(EdgeStore other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.from[i], other.to[i], EdgeLabel.fromCode(other.labels[i]));
+        }
+        for (int i = 0; i < other.regionCount * 4; i += 4) {
+            addRegion(other.regions[i], other.regions[i + 1], other.regions[i + 2],
+                    EdgeLabel.fromCode(other.regions[i + 3]));
+        }
+    }
+
+    /** Adds a scope or control region; see {@link RegionTable}. */
+    void addRegion(int start, int end, int anchor, EdgeLabel label) {
+        if (regionCount * 4 == regions.length) {
+            regions = Arrays.copyOf(regions, Math.max(64, regions.length * 2));
+        }
+        regions[regionCount * 4] = start;
+        regions[regionCount * 4 + 1] = end;
+        regions[regionCount * 4 + 2] = anchor;
+        regions[regionCount * 4 + 3] = label.code();
+        regionCount++;
+    }
+
+    /**
+     * Builds the immutable graph. {@code nodeLines} are the lines AST nodes begin on; pass them
+     * for a range-encoded graph, or null for a flat one.
+     */
+    CompactGraph freeze(BitSet nodeLines) {
+        RegionTable table = null;
+        if (nodeLines != null) {
+            int[] starts = new int[regionCount];
+            int[] ends = new int[regionCount];
+            int[] anchors = new int[regionCount];
+            byte[] regionLabels = new byte[regionCount];
+            for (int i = 0; i < regionCount; i++) {
+                starts[i] = regions[i * 4];
+                ends[i] = regions[i * 4 + 1];
+                anchors[i] = regions[i * 4 + 2];
+                regionLabels[i] = (byte) regions[i * 4 + 3];
+            }
+            table = new RegionTable(starts, ends, anchors, regionLabels, nodeLines.stream().toArray());
+        }
+        CompactGraph graph = CompactGraph.fromEdges(from, to, labels, size, table);
+        from = null;
+        to = null;
+        labels = null;
+        keys = null;
+        return graph;
+    }
+
+    private void rehash() {
+        long[] old = keys;
+        keys = newTable(old.length * 2);
+        int mask = keys.length - 1;
+        for (long key : old) {
+            if (key != EMPTY) {
+                int slot = mix(key) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    private static long[] newTable(int capacity) {
+        long[] table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
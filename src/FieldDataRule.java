@@ -0,0 +1,62 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * data edges from field usages inside methods to the assignment that last set the field:
+ * a "this.x = ..." in the same method, else in the class constructor, else the field
+ * declaration itself.
+ */
+class FieldDataRule implements EdgeRule {
+    @Override
+    public String name() {
+        return "field_data";
+    }
+
+    @Override
+    public void finish(AnalysisContext ctx) {
+        for (MethodFacts method : ctx.methods) {
+            Map<String, Integer> methodFieldAssignments = new HashMap<>();
+            for (FlowEvent event : method.events) {
+                if (event.kind == FlowEvent.Kind.ASSIGN && event.name.startsWith("this.")) {
+                    String fieldName = event.name.substring(5);
+                    if (ctx.fieldDecls.containsKey(fieldName)) {
+                        methodFieldAssignments.put(fieldName, event.line);
+                    }
+                }
+            }
+
+            for (FlowEvent event : method.events) {
+                if (event.kind != FlowEvent.Kind.NAME || event.className == null
+                        || !ctx.fieldDecls.containsKey(event.name)) {
+                    continue;
+                }
+                String varName = event.name;
+                int usageLine = event.line;
+                Integer fieldLine = ctx.fieldDecls.get(varName);
+                if (methodFieldAssignments.containsKey(varName)) {
+                    int assignLine = methodFieldAssignments.get(varName);
+                    if (usageLine != assignLine) {
+                        ctx.addEdge(usageLine, assignLine, EdgeLabel.DATA);
+                    }
+                    continue;
+                }
+                Integer constructorLine = ctx.constructorDecls.get(event.className);
+                if (constructorLine != null) {
+                    ConstructorFacts constructor = ctx.index().constructorAt(constructorLine);
+                    if (constructor != null) {
+                        Integer assignLine = constructor.thisAssignments.get("this." + varName);
+                        if (assignLine != null) {
+                            if (usageLine != assignLine) {
+                                ctx.addEdge(usageLine, assignLine, EdgeLabel.DATA);
+                            }
+                        } else if (fieldLine != null && usageLine != fieldLine) {
+                            ctx.addEdge(usageLine, fieldLine, EdgeLabel.DATA);
+                        }
+                    }
+                } else if (fieldLine != null && usageLine != fieldLine) {
+                    ctx.addEdge(usageLine, fieldLine, EdgeLabel.DATA);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wall time and heap allocation allowed for analysing one file. The analysis checks its
+ * budget cooperatively, every few thousand nodes of the walk, between passes and between
+ * methods of the data-flow pass, and stops with {@link Exceeded} once either limit is
+ * crossed. Allocation is what the analysing thread allocated since the budget started, where
+ * the JVM can measure it, plus what tasks forked onto other threads allocated under a
+ * {@link #fork}. Parsing cannot be interrupted, but a slow parse uses up the budget.
+ */
+final class FileBudget {
+    static final FileBudget UNLIMITED = new FileBudget(0, 0);
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /** Thrown by {@link #check} when the budget is used up. */
+    static final class Exceeded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Exceeded(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private final long millis;
+    private final long bytes;
+    private final long deadline;
+    private final Thread thread;
+    // allocation reported so far by this budget and all its forks
+    private final AtomicLong used;
+    // this thread's allocation counter when it last reported
+    private long reported;
+
+    private FileBudget(long millis, long bytes) {
+        this(millis, bytes, millis > 0 ? System.nanoTime() + millis * 1_000_000 : Long.MAX_VALUE, new AtomicLong());
+    }
+
+    private FileBudget(long millis, long bytes, long deadline, AtomicLong used) {
+        this.millis = millis;
+        this.bytes = bytes;
+        this.deadline = deadline;
+        this.used = used;
+        this.thread = Thread.currentThread();
+        this.reported = bytes > 0 ? allocated() : 0;
+    }
+
+    /** Starts a budget on the current thread; a limit of 0 is no limit. */
+    static FileBudget start(long millis, long megabytes) {
+        return millis <= 0 && megabytes <= 0 ? UNLIMITED : new FileBudget(millis, megabytes << 20);
+    }
+
+    /** A fresh budget with the same limits, for a second attempt at the same file. */
+    FileBudget restart() {
+        return this == UNLIMITED ? this : new FileBudget(millis, bytes);
+    }
+
+    /**
+     * The budget for a task forked onto the current thread: same deadline, and what the thread
+     * allocates from now on counts against this budget. {@link #release} it when the task ends.
+     */
+    FileBudget fork() {
+        return bytes == 0 || Thread.currentThread() == thread ? this : new FileBudget(millis, bytes, deadline, used);
+    }
+
+    /** Counts what a forked task allocated since its last check. */
+    void release() {
+        if (bytes > 0 && Thread.currentThread() == thread) {
+            report();
+        }
+    }
+
+    void check() {
+        if (this == UNLIMITED) {
+            return;
+        }
+        if (System.nanoTime() > deadline) {
+            throw new Exceeded("time budget of " + millis + " ms exceeded");
+        }
+        if (bytes > 0 && Thread.currentThread() == thread && report() > bytes) {
+            throw new Exceeded("memory budget of " + (bytes >> 20) + " MB exceeded");
+        }
+    }
+
+    private long report() {
+        long now = allocated();
+        long total = used.addAndGet(now - reported);
+        reported = now;
+        return total;
+    }
+
+    private static long allocated() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getCurrentThreadAllocatedBytes();
+            }
+        }
+        return 0;
+    }
+}
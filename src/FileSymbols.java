@@ -0,0 +1,117 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Everything call resolution needs to know about one source file: its package and imports,
+ * the types and methods it declares and the calls it makes. Small enough to keep for every
+ * file of a project, and to cache next to the file's graph.
+ */
+class FileSymbols {
+    String packageName = "";
+    /** Simple name to qualified name, for single-type imports. */
+    final Map<String, String> imports = new HashMap<>();
+    /** Packages imported on demand. */
+    final List<String> wildcardImports = new ArrayList<>();
+    final List<TypeSymbol> types = new ArrayList<>();
+    final List<MethodSymbol> methods = new ArrayList<>();
+    final List<CallSite> calls = new ArrayList<>();
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeUTF(packageName);
+        out.writeInt(imports.size());
+        for (Map.Entry<String, String> entry : imports.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeUTF(entry.getValue());
+        }
+        writeStrings(out, wildcardImports.toArray(new String[0]));
+        out.writeInt(types.size());
+        for (TypeSymbol type : types) {
+            out.writeUTF(type.name);
+            out.writeUTF(type.qualifiedName);
+            out.writeInt(type.line);
+            writeStrings(out, type.supertypes.toArray(new String[0]));
+            out.writeInt(type.fieldTypes.size());
+            for (Map.Entry<String, String> field : type.fieldTypes.entrySet()) {
+                out.writeUTF(field.getKey());
+                writeString(out, field.getValue());
+            }
+        }
+        out.writeInt(methods.size());
+        for (MethodSymbol method : methods) {
+            writeString(out, method.type);
+            out.writeUTF(method.name);
+            out.writeInt(method.line);
+            writeStrings(out, method.parameterTypes);
+            out.writeBoolean(method.varargs);
+            out.writeInt(method.returns.size());
+            for (int line : method.returns) {
+                out.writeInt(line);
+            }
+        }
+        out.writeInt(calls.size());
+        for (CallSite call : calls) {
+            out.writeInt(call.line);
+            out.writeUTF(call.name);
+            writeStrings(out, call.argumentTypes);
+            writeString(out, call.enclosingType);
+            out.writeByte(call.receiver);
+            writeString(out, call.receiverName);
+        }
+    }
+
+    static FileSymbols read(DataInputStream in) throws IOException {
+        FileSymbols symbols = new FileSymbols();
+        symbols.packageName = in.readUTF();
+        for (int i = in.readInt(); i > 0; i--) {
+            symbols.imports.put(in.readUTF(), in.readUTF());
+        }
+        symbols.wildcardImports.addAll(Arrays.asList(readStrings(in)));
+        for (int i = in.readInt(); i > 0; i--) {
+            TypeSymbol type = new TypeSymbol(in.readUTF(), in.readUTF(), in.readInt(), Arrays.asList(readStrings(in)));
+            for (int j = in.readInt(); j > 0; j--) {
+                type.fieldTypes.put(in.readUTF(), readString(in));
+            }
+            symbols.types.add(type);
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            MethodSymbol method = new MethodSymbol(readString(in), in.readUTF(), in.readInt(), readStrings(in), in.readBoolean());
+            for (int j = in.readInt(); j > 0; j--) {
+                method.returns.add(in.readInt());
+            }
+            symbols.methods.add(method);
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            symbols.calls.add(new CallSite(in.readInt(), in.readUTF(), readStrings(in), readString(in),
+                    in.readByte(), readString(in)));
+        }
+        return symbols;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] values = new String[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(in);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * A field-relevant node inside a method: an assignment or a name usage. Events are recorded
+ * in tree order during the walk.
+ */
+class FlowEvent {
+    enum Kind { ASSIGN, NAME }
+
+    final Kind kind;
+    final int line;
+    final String name;
+    // NAME: the nearest enclosing class, or null
+    final String className;
+
+    private FlowEvent(Kind kind, int line, String name, String className) {
+        this.kind = kind;
+        this.line = line;
+        this.name = name;
+        this.className = className;
+    }
+
+    static FlowEvent assign(int line, String target) {
+        return new FlowEvent(Kind.ASSIGN, line, target, null);
+    }
+
+    static FlowEvent name(int line, String name, String className) {
+        return new FlowEvent(Kind.NAME, line, name, className);
+    }
+}
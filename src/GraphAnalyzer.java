@@ -0,0 +1,232 @@
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.comments.Comment;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Builds the dependency graph of a compilation unit with a single pre-order walk over the
+ * AST. Declarations and per-method facts are collected into an {@link AnalysisContext}
+ * while the rules see each node; rules that need the complete declaration tables produce
+ * their edges afterwards from those facts, without touching the AST again.
+ *
+ * The walk is sequential, since rules track open regions and declarations as it goes. In
+ * parallel mode the finishing passes then run concurrently on the current fork/join pool,
+ * each into a private {@link EdgeStore} that is appended to the graph in rule order, so the
+ * graph is identical to a sequential run.
+ *
+ * In lean mode the tree is consumed by the analysis: its tokens are dropped up front and the
+ * body of each class member is detached as soon as the walk leaves it (see {@link LeanTree}),
+ * so the graph and the collected facts are all that outlive the walk.
+ */
+class GraphAnalyzer {
+    private final Supplier<List<EdgeRule>> ruleFactory;
+    private final boolean ranges;
+    private final boolean parallel;
+    private final boolean lean;
+
+    GraphAnalyzer() {
+        this(false, false, false);
+    }
+
+    /**
+     * With {@code ranges}, scope and control edges are kept as regions (see {@link RegionTable});
+     * with {@code parallel}, the passes finish concurrently; with {@code lean}, the tree is
+     * released as it is analysed.
+     */
+    GraphAnalyzer(boolean ranges, boolean parallel, boolean lean) {
+        this(GraphAnalyzer::defaultRules, ranges, parallel, lean);
+    }
+
+    GraphAnalyzer(Supplier<List<EdgeRule>> ruleFactory) {
+        this(ruleFactory, false, false, false);
+    }
+
+    GraphAnalyzer(Supplier<List<EdgeRule>> ruleFactory, boolean ranges, boolean parallel, boolean lean) {
+        this.ruleFactory = ruleFactory;
+        this.ranges = ranges;
+        this.parallel = parallel;
+        this.lean = lean;
+    }
+
+    /**
+     * The rules of a degraded analysis, for files that exceeded their {@link FileBudget}: all
+     * but the data-flow pass, whose per-method fixpoints dominate on pathological input.
+     */
+    static List<EdgeRule> degradedRules() {
+        List<EdgeRule> rules = new ArrayList<>(defaultRules());
+        rules.removeIf(rule -> rule instanceof DataFlowRule);
+        return rules;
+    }
+
+    /** The rules in the order their edges are inserted into the graph. */
+    static List<EdgeRule> defaultRules() {
+        return Arrays.asList(
+                ScopeRule.classScope(),
+                ScopeRule.methodScope(),
+                new DataFlowRule(),
+                new FieldDataRule(),
+                new ObjectCreationRule(),
+                new CallRule(),
+                new ReturnRule(),
+                new ControlRule());
+    }
+
+    CompactGraph analyze(CompilationUnit cu) {
+        return analyze(cu, new AnalysisStats(null));
+    }
+
+    /**
+     * Builds the graph, recording into {@code stats} the walk and each rule's finishing pass
+     * as separate phases (rules only add edges when finishing) plus node and edge counts.
+     */
+    CompactGraph analyze(CompilationUnit cu, AnalysisStats stats) {
+        return analyze(cu, stats, null);
+    }
+
+    /** As {@link #analyze(CompilationUnit, AnalysisStats)}, handing the file's symbols to {@code symbols} if not null. */
+    CompactGraph analyze(CompilationUnit cu, AnalysisStats stats, Consumer<FileSymbols> symbols) {
+        return analyze(cu, stats, symbols, FileBudget.UNLIMITED);
+    }
+
+    /** As above, stopping with {@link FileBudget.Exceeded} once {@code budget} is used up. */
+    CompactGraph analyze(CompilationUnit cu, AnalysisStats stats, Consumer<FileSymbols> symbols, FileBudget budget) {
+        List<EdgeRule> rules = ruleFactory.get();
+        AnalysisContext ctx = new AnalysisContext(ranges, parallel, lean, budget);
+        AnalysisStats.Timer walkTimer = stats.time("walk");
+        try {
+            if (lean) {
+                LeanTree.dropTokens(cu);
+            }
+            stats.countNodes(walk(cu, rules, ctx));
+        } finally {
+            walkTimer.close();
+        }
+        int duplicates = parallel ? finishConcurrently(rules, ctx, stats) : 0;
+        if (!parallel) {
+            for (EdgeRule rule : rules) {
+                budget.check();
+                try (AnalysisStats.Timer timer = stats.time("rule:" + rule.name())) {
+                    int before = ctx.edges.size();
+                    rule.finish(ctx);
+                    timer.edges(ctx.edges.size() - before);
+                }
+            }
+        }
+        duplicates += ctx.edges.duplicates();
+        CompactGraph graph = ctx.edges.freeze(ctx.nodeLines);
+        stats.countGraph(graph, duplicates);
+        if (symbols != null) {
+            symbols.accept(ctx.symbols);
+        }
+        return graph;
+    }
+
+    /**
+     * Finishes every rule as its own fork/join task and appends the buffers in rule order.
+     * Returns the duplicates the buffers rejected, which a sequential run would have rejected
+     * in the graph itself.
+     */
+    private static int finishConcurrently(List<EdgeRule> rules, AnalysisContext ctx, AnalysisStats stats) {
+        ctx.index(); // built once here; the rules only read it
+        List<ForkJoinTask<AnalysisStats>> tasks = new ArrayList<>(rules.size());
+        List<EdgeStore> buffers = new ArrayList<>(rules.size());
+        for (EdgeRule rule : rules) {
+            EdgeStore buffer = new EdgeStore();
+            buffers.add(buffer);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                // stats of one file belong to one thread; each task times itself apart
+                AnalysisStats ruleStats = new AnalysisStats(null);
+                try (AnalysisStats.Timer timer = ruleStats.time("rule:" + rule.name())) {
+                    ctx.finishInto(buffer, () -> rule.finish(ctx));
+                    timer.edges(buffer.size());
+                }
+                return ruleStats;
+            }).fork());
+        }
+        int duplicates = 0;
+        for (ForkJoinTask<AnalysisStats> task : tasks) {
+            stats.merge(task.join());
+        }
+        AnalysisStats.Timer mergeTimer = stats.time("merge");
+        try {
+            for (EdgeStore buffer : buffers) {
+                duplicates += buffer.duplicates();
+                ctx.edges.addAll(buffer);
+            }
+        } finally {
+            mergeTimer.close();
+        }
+        return duplicates;
+    }
+
+    /** Returns the number of nodes visited. */
+    private static int walk(Node root, List<EdgeRule> rules, AnalysisContext ctx) {
+        Deque<Frame> stack = new ArrayDeque<>();
+        int nodes = 1;
+        stack.push(new Frame(null, root, enter(null, root, 0, rules, ctx)));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.next < frame.children.size()) {
+                Node child = frame.children.get(frame.next++);
+                if (child instanceof Comment) continue;
+                if ((++nodes & 4095) == 0) {
+                    ctx.budget().check();
+                }
+                int line = enter(frame.node, child, frame.line, rules, ctx);
+                stack.push(new Frame(frame.node, child, line));
+            } else {
+                stack.pop();
+                for (EdgeRule rule : rules) {
+                    rule.exit(frame.parent, frame.node, ctx);
+                }
+                ctx.exit(frame.parent, frame.node);
+                if (ctx.lean && LeanTree.releasable(frame.parent, frame.node)) {
+                    LeanTree.release(frame.node);
+                }
+            }
+        }
+        return nodes;
+    }
+
+    /** Returns the node's line; a node without a position (only in synthesized trees) takes its parent's. */
+    private static int enter(Node parent, Node node, int parentLine, List<EdgeRule> rules, AnalysisContext ctx) {
+        int line = node.getBegin().isPresent() ? node.getBegin().get().line : parentLine;
+        ctx.enter(parent, node, line);
+        for (EdgeRule rule : rules) {
+            rule.enter(parent, node, line, ctx);
+        }
+        return line;
+    }
+
+    private static final class Frame {
+        final Node parent;
+        final Node node;
+        final List<Node> children;
+        final int line;
+        int next;
+
+        Frame(Node parent, Node node, int line) {
+            this.parent = parent;
+            this.node = node;
+            this.children = node.getChildNodes();
+            this.line = line;
+        }
+    }
+
+    /**
+     * The line {@code node} begins on or, for a node without a position, the line of its
+     * nearest positioned ancestor; 0 if there is none.
+     */
+    static int lineOf(Node node) {
+        for (Node current = node; current != null; current = current.getParentNode().orElse(null)) {
+            if (current.getBegin().isPresent()) {
+                return current.getBegin().get().line;
+            }
+        }
+        return 0;
+    }
+}
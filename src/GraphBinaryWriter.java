@@ -0,0 +1,80 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a graph in the binary format {@link MappedGraph} reads. All numbers are
+ * little-endian and every int section starts on a 4-byte boundary:
+ *
+ * <pre>
+ * header      int magic "DGB1", int version, int lineCount, int edgeCount,
+ *             int labelCount, int reserved, long dictionaryOffset
+ * lines       int[lineCount]       lines with edges, ascending
+ * offsets     int[lineCount + 1]   edges of lines[i] are [offsets[i], offsets[i + 1])
+ * targets     int[edgeCount]
+ * labels      byte[edgeCount]      index into the dictionary
+ * dictionary  labelCount x (short length, UTF-8 text)
+ * </pre>
+ *
+ * Edges are stored per line, so a range-encoded graph is expanded first.
+ */
+class GraphBinaryWriter {
+    static final int MAGIC = 0x31424744; // "DGB1" read as a little-endian int
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+
+    private GraphBinaryWriter() {
+    }
+
+    static void write(CompactGraph graph, Path file) throws IOException {
+        graph = graph.flatten(false);
+        int lineCount = graph.lineCount();
+        int edgeCount = graph.edgeCount();
+        EdgeLabel[] dictionary = EdgeLabel.values();
+        long dictionaryOffset = HEADER_BYTES + 4L * (2 * lineCount + 1) + 5L * edgeCount;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(lineCount).putInt(edgeCount)
+                    .putInt(dictionary.length).putInt(0).putLong(dictionaryOffset);
+            for (int i = 0; i < lineCount; i++) {
+                putInt(channel, buffer, graph.line(i));
+            }
+            for (int i = 0; i < lineCount; i++) {
+                putInt(channel, buffer, graph.edgeStart(i));
+            }
+            putInt(channel, buffer, edgeCount);
+            for (int edge = 0; edge < edgeCount; edge++) {
+                putInt(channel, buffer, graph.target(edge));
+            }
+            for (int edge = 0; edge < edgeCount; edge++) {
+                if (!buffer.hasRemaining()) drain(channel, buffer);
+                buffer.put(graph.label(edge).code());
+            }
+            for (EdgeLabel label : dictionary) {
+                byte[] text = label.text().getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < 2 + text.length) drain(channel, buffer);
+                buffer.putShort((short) text.length).put(text);
+            }
+            drain(channel, buffer);
+        }
+    }
+
+    private static void putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+        if (buffer.remaining() < 4) drain(channel, buffer);
+        buffer.putInt(value);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,254 @@
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of finished graphs, keyed by the SHA-256 of the source bytes. Entries live
+ * under a directory named after {@link DependencyGraph#TOOL_VERSION}; directories of other
+ * versions ({@code v<n>}) are deleted when the cache is opened, so a changed analysis never
+ * serves stale graphs. Anything else in the cache directory is left alone. The cache is
+ * bounded in bytes and evicts least recently used entries (a hit refreshes the entry's
+ * modification time). Sources that failed to parse are cached too, so warm runs never
+ * re-parse them. A graph is stored together with the file's {@link FileSymbols}, so
+ * cross-file call linking works from a warm cache as well. Safe for concurrent use.
+ */
+class GraphCache {
+    private static final int MAGIC = 0x44474331; // "DGC1"
+    private static final byte GRAPH = 0;
+    private static final byte FAILURE = 1;
+    private static final Pattern VERSION = Pattern.compile("v\\d+");
+
+    /** A cached outcome: either the graph and symbols, or the reason the source could not be analysed. */
+    static final class Entry {
+        final CompactGraph graph;
+        final FileSymbols symbols;
+        final String failure;
+
+        private Entry(CompactGraph graph, FileSymbols symbols, String failure) {
+            this.graph = graph;
+            this.symbols = symbols;
+            this.failure = failure;
+        }
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong size = new AtomicLong();
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    GraphCache(Path root, long maxBytes) throws IOException {
+        this.directory = root.resolve("v" + DependencyGraph.TOOL_VERSION);
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        try (Stream<Path> versions = Files.list(root)) {
+            List<Path> stale = versions
+                    .filter(p -> !p.equals(directory) && Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS))
+                    .filter(p -> VERSION.matcher(p.getFileName().toString()).matches())
+                    .collect(Collectors.toList());
+            for (Path version : stale) {
+                deleteRecursively(version);
+            }
+        }
+        for (Path entry : entries()) {
+            size.addAndGet(Files.size(entry));
+        }
+    }
+
+    /** Range-encoded analyses are cached apart from flat ones; the other forms derive from them. */
+    String key(byte[] source, GraphForm form) {
+        MessageDigest digest = digests.get();
+        digest.reset();
+        if (form.ranged()) {
+            digest.update((byte) 'r');
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest(source)) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /** The cached outcome for {@code key}, or null on a miss or an unreadable entry. */
+    Entry get(String key) {
+        Path entry = entryPath(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            Entry result = in.readByte() == FAILURE
+                    ? new Entry(null, null, in.readUTF()) : new Entry(read(in), FileSymbols.read(in), null);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return result;
+        } catch (IOException | RuntimeException e) {
+            // missing, half-evicted or corrupt entries are treated as misses
+            return null;
+        }
+    }
+
+    void put(String key, CompactGraph graph, FileSymbols symbols) throws IOException {
+        store(key, new Entry(graph, symbols, null));
+    }
+
+    void putFailure(String key, String failure) throws IOException {
+        store(key, new Entry(null, null, failure));
+    }
+
+    private void store(String key, Entry value) throws IOException {
+        Path entry = entryPath(key);
+        if (Files.exists(entry)) {
+            return;
+        }
+        Files.createDirectories(entry.getParent());
+        Path temp = Files.createTempFile(entry.getParent(), key, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                if (value.graph != null) {
+                    out.writeByte(GRAPH);
+                    write(value.graph, out);
+                    value.symbols.write(out);
+                } else {
+                    out.writeByte(FAILURE);
+                    out.writeUTF(value.failure);
+                }
+            }
+            long written = Files.size(temp);
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (size.addAndGet(written) > maxBytes) {
+                evict();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** Deletes least recently used entries until the cache is back under 90% of its budget. */
+    private synchronized void evict() throws IOException {
+        if (size.get() <= maxBytes) {
+            return;
+        }
+        List<Path> entries = entries();
+        List<FileTime> times = new ArrayList<>(entries.size());
+        for (Path entry : entries) {
+            times.add(Files.getLastModifiedTime(entry));
+        }
+        List<Integer> order = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(times::get));
+        for (int i : order) {
+            if (size.get() <= maxBytes * 9 / 10) {
+                break;
+            }
+            Path entry = entries.get(i);
+            try {
+                long bytes = Files.size(entry);
+                Files.delete(entry);
+                size.addAndGet(-bytes);
+            } catch (NoSuchFileException ignored) {
+                // evicted concurrently by another run
+            }
+        }
+    }
+
+    private List<Path> entries() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(p -> p.toString().endsWith(".graph")).collect(Collectors.toList());
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".graph");
+    }
+
+    private static void write(CompactGraph graph, DataOutputStream out) throws IOException {
+        out.writeInt(graph.lineCount());
+        out.writeInt(graph.edgeCount());
+        for (int i = 0; i < graph.lineCount(); i++) {
+            out.writeInt(graph.line(i));
+            out.writeInt(graph.edgeEnd(i) - graph.edgeStart(i));
+        }
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            out.writeInt(graph.target(edge));
+            out.writeByte(graph.label(edge).code());
+        }
+        RegionTable regions = graph.regions();
+        out.writeInt(regions == null ? -1 : regions.size());
+        if (regions != null) {
+            for (int region = 0; region < regions.size(); region++) {
+                out.writeInt(regions.start(region));
+                out.writeInt(regions.end(region));
+                out.writeInt(regions.anchor(region));
+                out.writeByte(regions.label(region).code());
+            }
+            out.writeInt(regions.nodeLineCount());
+            for (int i = 0; i < regions.nodeLineCount(); i++) {
+                out.writeInt(regions.nodeLine(i));
+            }
+        }
+    }
+
+    private static CompactGraph read(DataInputStream in) throws IOException {
+        int lineCount = in.readInt();
+        int edgeCount = in.readInt();
+        int[] lines = new int[lineCount];
+        int[] offsets = new int[lineCount + 1];
+        for (int i = 0; i < lineCount; i++) {
+            lines[i] = in.readInt();
+            offsets[i + 1] = offsets[i] + in.readInt();
+        }
+        if (offsets[lineCount] != edgeCount) {
+            throw new IOException("Corrupt cache entry");
+        }
+        int[] targets = new int[edgeCount];
+        byte[] labels = new byte[edgeCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            targets[edge] = in.readInt();
+            labels[edge] = in.readByte();
+        }
+        int regionCount = in.readInt();
+        RegionTable regions = null;
+        if (regionCount >= 0) {
+            int[] starts = new int[regionCount];
+            int[] ends = new int[regionCount];
+            int[] anchors = new int[regionCount];
+            byte[] regionLabels = new byte[regionCount];
+            for (int region = 0; region < regionCount; region++) {
+                starts[region] = in.readInt();
+                ends[region] = in.readInt();
+                anchors[region] = in.readInt();
+                regionLabels[region] = in.readByte();
+            }
+            int[] nodeLines = new int[in.readInt()];
+            for (int i = 0; i < nodeLines.length; i++) {
+                nodeLines[i] = in.readInt();
+            }
+            regions = new RegionTable(starts, ends, anchors, regionLabels, nodeLines);
+        }
+        return new CompactGraph(lines, offsets, targets, labels, regions);
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Long-running mode: analyses the source roots once, then keeps every graph in memory,
+ * re-analyses files as soon as the {@link WatchService} reports them changed and answers
+ * queries on a loopback HTTP port. The JVM, JavaParser and the JIT stay warm between saves,
+ * so an update costs only the parse and analysis of the changed file.
+ *
+ * <pre>
+ * GET  /graph?file=pkg/Foo.java[&amp;compact]   graph of one file (404 unknown, 422 not analysable)
+ * POST /analyze?file=pkg/Foo.java          re-analyse now, then answer like /graph (405 for other methods)
+ * GET  /files                              keys of all known files
+ * GET  /status                             file and failure counts
+ * </pre>
+ *
+ * Files are addressed by the same root-relative keys the project mode uses.
+ */
+class GraphDaemon {
+    private final List<Path> roots;
+    private final Map<String, CompactGraph> graphs = new ConcurrentHashMap<>();
+    private final Map<String, String> failures = new ConcurrentHashMap<>();
+    private final Map<String, Path> paths = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+    private final WatchService watcher;
+    private final GraphSink sink = new GraphSink() {
+        @Override
+        public void write(String key, CompactGraph graph) {
+            graphs.put(key, graph);
+            failures.remove(key);
+        }
+
+        @Override
+        public void failed(String key, String reason) {
+            graphs.remove(key);
+            failures.put(key, reason);
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+    private ProjectAnalyzer analyzer;
+
+    GraphDaemon(List<Path> roots) throws IOException {
+        this.roots = new ArrayList<>();
+        for (Path root : roots) {
+            this.roots.add(root.toAbsolutePath().normalize());
+        }
+        this.watcher = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Loads every graph, starts the HTTP endpoint and blocks watching for changes. Both the
+     * first load and every update go through {@code analyzer}, so the daemon serves the graphs
+     * a project run would write.
+     */
+    void run(int port, ProjectAnalyzer analyzer) throws IOException, InterruptedException {
+        this.analyzer = analyzer;
+        List<ProjectAnalyzer.SourceFile> sources = ProjectAnalyzer.discover(roots);
+        for (ProjectAnalyzer.SourceFile source : sources) {
+            paths.put(source.key, source.path);
+        }
+        System.out.println(analyzer.analyze(sources, sink));
+
+        for (Path root : roots) {
+            if (Files.isDirectory(root)) {
+                registerAll(root);
+            } else {
+                watchedDirs.put(root.getParent().register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), root.getParent());
+            }
+        }
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/graph", exchange -> respondWithGraph(exchange, false));
+        server.createContext("/analyze", exchange -> respondWithGraph(exchange, true));
+        server.createContext("/files", exchange -> respond(exchange, 200, new JSONArray(new TreeSet<>(paths.keySet())).toString()));
+        server.createContext("/status", exchange -> respond(exchange, 200, new JSONObject()
+                .put("files", paths.size())
+                .put("failed", failures.size())
+                .toString()));
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.start();
+        System.out.println("Serving graphs on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+
+        watch();
+    }
+
+    private void watch() throws IOException, InterruptedException {
+        while (true) {
+            WatchKey key = watcher.take();
+            Set<Path> changed = new LinkedHashSet<>();
+            // Editors often save through several events; coalesce everything already queued
+            while (key != null) {
+                collect(key, changed);
+                key = watcher.poll();
+            }
+            for (Path path : changed) {
+                long start = System.nanoTime();
+                String fileKey = update(path);
+                if (fileKey != null) {
+                    System.out.printf("Updated %s in %.1f ms%n", fileKey, (System.nanoTime() - start) / 1e6);
+                }
+            }
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed) throws IOException {
+        Path dir = watchedDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                for (String fileKey : paths.keySet()) {
+                    changed.add(paths.get(fileKey));
+                }
+                for (ProjectAnalyzer.SourceFile source : ProjectAnalyzer.discover(roots)) {
+                    changed.add(source.path);
+                }
+                continue;
+            }
+            if (dir == null) continue;
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                registerAll(path);
+                for (ProjectAnalyzer.SourceFile source : ProjectAnalyzer.discover(Collections.singletonList(path))) {
+                    changed.add(source.path);
+                }
+            } else if (path.toString().endsWith(".java")) {
+                changed.add(path);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+    }
+
+    /** Re-analyses (or forgets, if deleted) one source file; returns its key, or null if outside the roots. */
+    private synchronized String update(Path path) {
+        ProjectAnalyzer.SourceFile source = sourceOf(path);
+        if (source == null) {
+            return null;
+        }
+        if (!Files.isRegularFile(path)) {
+            paths.remove(source.key);
+            graphs.remove(source.key);
+            failures.remove(source.key);
+            return source.key;
+        }
+        paths.put(source.key, source.path);
+        analyzer.analyze(source, sink, new BatchReport());
+        return source.key;
+    }
+
+    private ProjectAnalyzer.SourceFile sourceOf(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        for (Path root : roots) {
+            if (Files.isRegularFile(root) ? absolute.equals(root) : absolute.startsWith(root)) {
+                return new ProjectAnalyzer.SourceFile(Files.isRegularFile(root) ? root.getParent() : root, absolute);
+            }
+        }
+        return null;
+    }
+
+    private void registerAll(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                watchedDirs.put(dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void respondWithGraph(HttpExchange exchange, boolean reanalyse) throws IOException {
+        if (reanalyse && !exchange.getRequestMethod().equals("POST")) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            respond(exchange, 405, new JSONObject().put("error", "Use POST to re-analyse").toString());
+            return;
+        }
+        Map<String, String> query = query(exchange);
+        String key = query.get("file");
+        Path path = key == null ? null : paths.containsKey(key) ? paths.get(key) : resolve(key);
+        if (path != null) {
+            key = sourceOf(path).key; // the normalised key update stores under
+            if (reanalyse) {
+                update(path);
+            }
+        }
+        CompactGraph graph = key == null ? null : graphs.get(key);
+        if (graph != null) {
+            respond(exchange, 200, GraphJsonWriter.toString(graph, !query.containsKey("compact")));
+        } else if (key != null && failures.containsKey(key)) {
+            respond(exchange, 422, new JSONObject().put("error", failures.get(key)).toString());
+        } else {
+            respond(exchange, 404, new JSONObject().put("error", "Unknown file: " + key).toString());
+        }
+    }
+
+    /** The source file {@code key} names below one of the roots, or null if it names none. */
+    private Path resolve(String key) {
+        for (Path root : roots) {
+            Path base = Files.isRegularFile(root) ? root.getParent() : root;
+            Path candidate = base.resolve(key).normalize();
+            if (candidate.toString().endsWith(".java") && Files.isRegularFile(candidate) && sourceOf(candidate) != null) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
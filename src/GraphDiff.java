@@ -0,0 +1,100 @@
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The edges one revision of a file added to or removed from its graph. An old edge survives
+ * when both of its lines are unchanged (see {@link LineAlignment}) and the new graph has the
+ * same edge between the lines they moved to; every other old edge is removed and every new
+ * edge no old one survived into is added. Removed edges are given in old line numbers,
+ * added ones in new line numbers.
+ */
+final class GraphDiff {
+    /** An edge from {@code line} to {@code target}. */
+    static final class Edge {
+        final int line;
+        final int target;
+        final EdgeLabel label;
+
+        private Edge(long key) {
+            this.line = (int) (key >>> 36);
+            this.target = (int) (key >>> 8) & 0xFFFFFFF;
+            this.label = EdgeLabel.fromCode((int) key & 0xFF);
+        }
+    }
+
+    final List<Edge> added = new ArrayList<>();
+    final List<Edge> removed = new ArrayList<>();
+
+    /** Either graph may be null for a file that exists in one revision only. */
+    static GraphDiff between(CompactGraph oldGraph, CompactGraph newGraph, LineAlignment alignment) {
+        long[] oldEdges = keys(oldGraph);
+        long[] newEdges = keys(newGraph);
+        Arrays.sort(newEdges);
+        boolean[] survived = new boolean[newEdges.length];
+        GraphDiff diff = new GraphDiff();
+        for (long edge : oldEdges) {
+            Edge old = new Edge(edge);
+            int line = alignment.newLine(old.line);
+            int target = alignment.newLine(old.target);
+            int at = line == 0 || target == 0 ? -1 : Arrays.binarySearch(newEdges, key(line, target, old.label));
+            if (at >= 0) {
+                survived[at] = true;
+            } else {
+                diff.removed.add(old);
+            }
+        }
+        for (int i = 0; i < newEdges.length; i++) {
+            if (!survived[i]) {
+                diff.added.add(new Edge(newEdges[i]));
+            }
+        }
+        return diff;
+    }
+
+    boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    /** Writes this diff as {"added": [...], "removed": [...]} of {"line", "label", "target"}. */
+    void write(Writer out) throws IOException {
+        out.write("{\n    \"added\": ");
+        write(added, out);
+        out.write(",\n    \"removed\": ");
+        write(removed, out);
+        out.write("\n  }");
+    }
+
+    private static void write(List<Edge> edges, Writer out) throws IOException {
+        out.write('[');
+        for (int i = 0; i < edges.size(); i++) {
+            Edge edge = edges.get(i);
+            out.write(i > 0 ? ",\n      " : "\n      ");
+            out.write("{\"line\": " + edge.line + ", \"label\": " + JSONObject.quote(edge.label.text())
+                    + ", \"target\": " + edge.target + "}");
+        }
+        out.write(edges.isEmpty() ? "]" : "\n    ]");
+    }
+
+    /** Every edge of {@code graph} packed as line, target and label code, in line order. */
+    private static long[] keys(CompactGraph graph) {
+        if (graph == null) {
+            return new long[0];
+        }
+        long[] keys = new long[graph.edgeCount()];
+        for (int i = 0; i < graph.lineCount(); i++) {
+            for (int edge = graph.edgeStart(i); edge < graph.edgeEnd(i); edge++) {
+                keys[edge] = key(graph.line(i), graph.target(edge), graph.label(edge));
+            }
+        }
+        return keys;
+    }
+
+    private static long key(int line, int target, EdgeLabel label) {
+        return (long) line << 36 | (long) target << 8 | label.code();
+    }
+}
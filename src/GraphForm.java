@@ -0,0 +1,21 @@
+/**
+ * How scope and control edges are represented in the written graph. The analysis itself is
+ * range-encoded for every form but {@link #FLAT}; {@link #present} turns its result into
+ * what gets written.
+ */
+public enum GraphForm {
+    /** One edge per line and enclosing region, as dependencies.json has always listed them. */
+    FLAT,
+    /** Each region once, as a line interval with its anchor, next to the remaining edges. */
+    RANGES,
+    /** Flat edges with each nesting chain of a label reduced to its innermost link. */
+    REDUCED;
+
+    boolean ranged() {
+        return this != FLAT;
+    }
+
+    CompactGraph present(CompactGraph graph) {
+        return this == REDUCED ? graph.flatten(true) : graph;
+    }
+}
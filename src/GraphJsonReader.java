@@ -0,0 +1,58 @@
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+/**
+ * Loads a graph written by {@link GraphJsonWriter}, in either the flat or the range-encoded
+ * layout, back into a {@link CompactGraph}.
+ */
+class GraphJsonReader {
+    private GraphJsonReader() {
+    }
+
+    static CompactGraph read(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    static CompactGraph read(Reader reader) {
+        JSONObject json = new JSONObject(new JSONTokener(reader));
+        EdgeStore store = new EdgeStore();
+        if (!json.has("regions")) {
+            readEdges(json, store);
+            return store.freeze(null);
+        }
+        readEdges(json.getJSONObject("edges"), store);
+        JSONArray regions = json.getJSONArray("regions");
+        for (int i = 0; i < regions.length(); i++) {
+            JSONObject region = regions.getJSONObject(i);
+            store.addRegion(region.getInt("start"), region.getInt("end"), region.getInt("anchor"),
+                    EdgeLabel.fromText(region.getString("label")));
+        }
+        JSONArray lines = json.getJSONArray("lines");
+        BitSet nodeLines = new BitSet();
+        for (int i = 0; i < lines.length(); i++) {
+            nodeLines.set(lines.getInt(i));
+        }
+        return store.freeze(nodeLines);
+    }
+
+    private static void readEdges(JSONObject edges, EdgeStore store) {
+        for (String line : edges.keySet()) {
+            JSONArray dependencies = edges.getJSONArray(line);
+            for (int i = 0; i < dependencies.length(); i++) {
+                JSONObject dependency = dependencies.getJSONObject(i);
+                store.add(Integer.parseInt(line), dependency.getInt("target"),
+                        EdgeLabel.fromText(dependency.getString("label")));
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams a {@link CompactGraph} as dependencies.json without building a JSON tree or the
+ * whole document in memory. The pretty layout is byte-for-byte what
+ * {@code JSONObject.toString(2)} produced: lines appear in the iteration order of a HashMap
+ * keyed by line number, single-element arrays stay on the opening line, and every
+ * dependency lists "label" before "target". Compact output uses the same order without
+ * whitespace.
+ *
+ * A range-encoded graph is written as an object holding those per-line "edges", its
+ * "regions" (label, anchor, start, end) and the "lines" AST nodes begin on, which a reader
+ * needs to expand the regions exactly.
+ */
+class GraphJsonWriter {
+    private static final int INDENT = 2;
+
+    private final Writer out;
+    private final boolean pretty;
+
+    GraphJsonWriter(Writer out, boolean pretty) {
+        this.out = out;
+        this.pretty = pretty;
+    }
+
+    static String toString(CompactGraph graph, boolean pretty) {
+        StringWriter buffer = new StringWriter();
+        try {
+            new GraphJsonWriter(buffer, pretty).write(graph);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toString();
+    }
+
+    void write(CompactGraph graph) throws IOException {
+        RegionTable regions = graph.regions();
+        if (regions == null) {
+            writeEdges(graph, 0);
+        } else {
+            out.write('{');
+            newline(INDENT);
+            out.write(pretty ? "\"edges\": " : "\"edges\":");
+            writeEdges(graph, INDENT);
+            out.write(',');
+            newline(INDENT);
+            out.write(pretty ? "\"regions\": [" : "\"regions\":[");
+            for (int region = 0; region < regions.size(); region++) {
+                if (region > 0) out.write(',');
+                newline(INDENT * 2);
+                writeRegion(regions, region);
+            }
+            if (regions.size() > 0) newline(INDENT);
+            out.write("],");
+            newline(INDENT);
+            out.write(pretty ? "\"lines\": [" : "\"lines\":[");
+            for (int i = 0; i < regions.nodeLineCount(); i++) {
+                if (i > 0) out.write(',');
+                out.write(Integer.toString(regions.nodeLine(i)));
+            }
+            out.write(']');
+            newline(0);
+            out.write('}');
+        }
+        out.flush();
+    }
+
+    private void writeEdges(CompactGraph graph, int indent) throws IOException {
+        int lineCount = graph.lineCount();
+        out.write('{');
+        if (lineCount == 1) {
+            writeLine(graph, 0, indent);
+        } else if (lineCount > 1) {
+            boolean needsComma = false;
+            for (int index : keyOrder(graph).values()) {
+                if (needsComma) out.write(',');
+                newline(indent + INDENT);
+                writeLine(graph, index, indent + INDENT);
+                needsComma = true;
+            }
+            newline(indent);
+        }
+        out.write('}');
+    }
+
+    /** One region per line, so a file with thousands of them stays readable. */
+    private void writeRegion(RegionTable regions, int region) throws IOException {
+        String separator = pretty ? ", " : ",";
+        String colon = pretty ? ": " : ":";
+        out.write("{\"label\"" + colon + '"' + regions.label(region).text() + '"');
+        out.write(separator + "\"anchor\"" + colon + regions.anchor(region));
+        out.write(separator + "\"start\"" + colon + regions.start(region));
+        out.write(separator + "\"end\"" + colon + regions.end(region) + '}');
+    }
+
+    private void writeLine(CompactGraph graph, int index, int indent) throws IOException {
+        out.write('"');
+        out.write(Integer.toString(graph.line(index)));
+        out.write(pretty ? "\": " : "\":");
+        int start = graph.edgeStart(index);
+        int end = graph.edgeEnd(index);
+        out.write('[');
+        if (end - start == 1) {
+            writeDependency(graph, start, indent);
+        } else {
+            int elementIndent = indent + INDENT;
+            for (int edge = start; edge < end; edge++) {
+                if (edge > start) out.write(',');
+                newline(elementIndent);
+                writeDependency(graph, edge, elementIndent);
+            }
+            newline(indent);
+        }
+        out.write(']');
+    }
+
+    private void writeDependency(CompactGraph graph, int edge, int indent) throws IOException {
+        out.write('{');
+        newline(indent + INDENT);
+        out.write(pretty ? "\"label\": \"" : "\"label\":\"");
+        out.write(graph.label(edge).text());
+        out.write("\",");
+        newline(indent + INDENT);
+        out.write(pretty ? "\"target\": \"" : "\"target\":\"");
+        out.write(Integer.toString(graph.target(edge)));
+        out.write('"');
+        newline(indent);
+        out.write('}');
+    }
+
+    private void newline(int indent) throws IOException {
+        if (!pretty) return;
+        out.write('\n');
+        for (int i = 0; i < indent; i++) {
+            out.write(' ');
+        }
+    }
+
+    /** Line indexes in the order org.json's HashMap-backed JSONObject iterated its keys. */
+    private static Map<String, Integer> keyOrder(CompactGraph graph) {
+        Map<String, Integer> order = new HashMap<>();
+        for (int i = 0; i < graph.lineCount(); i++) {
+            order.put(String.valueOf(graph.line(i)), i);
+        }
+        return order;
+    }
+}
@@ -0,0 +1,15 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination for the graphs of a project run. Implementations must accept concurrent
+ * {@link #write} calls from the analysis workers.
+ */
+interface GraphSink extends Closeable {
+    /** Stores the graph of one source file; {@code key} is its path relative to its root. */
+    void write(String key, CompactGraph graph) throws IOException;
+
+    /** Called instead of {@link #write} when a source could not be analysed. */
+    default void failed(String key, String reason) {
+    }
+}
@@ -0,0 +1,88 @@
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.Range;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.Statement;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps a parsed tree small while it is analysed, for the low-memory mode. JavaParser links
+ * every node to the token list of the whole file, which outweighs the nodes themselves;
+ * {@link #dropTokens} keeps each node's position and lets the tokens go. {@link #release}
+ * then detaches the body of each member once the walk has left it, so the tree shrinks as
+ * the analysis proceeds instead of living until the graph is written.
+ */
+final class LeanTree {
+    private LeanTree() {
+    }
+
+    /** Parser settings for the low-memory mode: comments are not attributed to nodes. */
+    static ParserConfiguration configuration() {
+        return configuration(new ParserConfiguration());
+    }
+
+    /** The settings of {@code base} that affect a parse, without comment attribution; {@code base} is left as is. */
+    static ParserConfiguration configuration(ParserConfiguration base) {
+        ParserConfiguration lean = new ParserConfiguration()
+                .setLanguageLevel(base.getLanguageLevel())
+                .setCharacterEncoding(base.getCharacterEncoding())
+                .setTabSize(base.getTabSize())
+                .setPreprocessUnicodeEscapes(base.isPreprocessUnicodeEscapes())
+                .setDetectOriginalLineSeparator(base.isDetectOriginalLineSeparator())
+                .setAttributeComments(false);
+        base.getSymbolResolver().ifPresent(lean::setSymbolResolver);
+        return lean;
+    }
+
+    static void dropTokens(Node root) {
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            Range range = node.getRange().orElse(null);
+            node.setTokenRange(null);
+            node.setRange(range);
+            for (Node child : node.getChildNodes()) {
+                pending.push(child);
+            }
+        }
+    }
+
+    /**
+     * Whether {@code node} is a member of a class whose facts are complete once the walk has
+     * left it. Members of local and anonymous classes go with the body around them.
+     */
+    static boolean releasable(Node parent, Node node) {
+        if (!(node instanceof BodyDeclaration) || !(parent instanceof TypeDeclaration)) {
+            return false;
+        }
+        for (Node ancestor = parent; ancestor != null; ancestor = ancestor.getParentNode().orElse(null)) {
+            if (ancestor instanceof Statement || ancestor instanceof Expression) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Detaches the statements and initializers of a member; nested types were hollowed member by member. */
+    static void release(Node member) {
+        if (member instanceof MethodDeclaration) {
+            ((MethodDeclaration) member).removeBody();
+        } else if (member instanceof ConstructorDeclaration) {
+            ((ConstructorDeclaration) member).setBody(new BlockStmt());
+        } else if (member instanceof InitializerDeclaration) {
+            ((InitializerDeclaration) member).setBody(new BlockStmt());
+        } else if (member instanceof FieldDeclaration) {
+            for (VariableDeclarator variable : ((FieldDeclaration) member).getVariables()) {
+                variable.removeInitializer();
+            }
+        } else if (member instanceof EnumConstantDeclaration) {
+            ((EnumConstantDeclaration) member).getArguments().clear();
+            ((EnumConstantDeclaration) member).getClassBody().clear();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+import java.util.*;
+
+/**
+ * Which lines of an old and a new version of a source file are the same line. Lines are
+ * compared by their content without surrounding whitespace, so re-indented code still
+ * aligns. Each distinct content is interned to an int id first, and the alignment is a
+ * patience diff over those ids: common leading and trailing lines are matched, lines that
+ * occur exactly once in both versions anchor the alignment along their longest increasing
+ * run, and the gaps between anchors are aligned the same way. A gap left with as many lines
+ * on both sides is a block edited in place, and its lines are paired in order, so an edited
+ * line keeps the edges its edit did not touch. Lines are numbered from 1.
+ */
+final class LineAlignment {
+    private final int[] oldToNew;
+    private final int[] newToOld;
+
+    private LineAlignment(int oldCount, int newCount) {
+        oldToNew = new int[oldCount + 1];
+        newToOld = new int[newCount + 1];
+    }
+
+    static LineAlignment of(String oldSource, String newSource) {
+        return of(lines(oldSource), lines(newSource));
+    }
+
+    static LineAlignment of(List<String> oldLines, List<String> newLines) {
+        Map<String, Integer> ids = new HashMap<>();
+        int[] a = intern(oldLines, ids);
+        int[] b = intern(newLines, ids);
+        LineAlignment alignment = new LineAlignment(a.length, b.length);
+        Deque<int[]> gaps = new ArrayDeque<>();
+        gaps.push(new int[]{0, a.length, 0, b.length});
+        while (!gaps.isEmpty()) {
+            int[] gap = gaps.pop();
+            alignment.align(a, b, gap[0], gap[1], gap[2], gap[3], gaps);
+        }
+        return alignment;
+    }
+
+    /** The new line {@code oldLine} became, or 0 if it was removed. */
+    int newLine(int oldLine) {
+        return oldLine < oldToNew.length ? oldToNew[oldLine] : 0;
+    }
+
+    /** The old line {@code newLine} was, or 0 if it was added. */
+    int oldLine(int newLine) {
+        return newLine < newToOld.length ? newToOld[newLine] : 0;
+    }
+
+    /** Aligns the half-open ranges [a0, a1) and [b0, b1), pushing the gaps left between anchors. */
+    private void align(int[] a, int[] b, int a0, int a1, int b0, int b1, Deque<int[]> gaps) {
+        while (a0 < a1 && b0 < b1 && a[a0] == b[b0]) {
+            link(a0++, b0++);
+        }
+        while (a0 < a1 && b0 < b1 && a[a1 - 1] == b[b1 - 1]) {
+            link(--a1, --b1);
+        }
+        if (a0 == a1 || b0 == b1) {
+            return;
+        }
+
+        // positions of the ids that occur exactly once on each side, -1 once seen twice
+        Map<Integer, int[]> once = new HashMap<>();
+        for (int i = a0; i < a1; i++) {
+            int[] seen = once.get(a[i]);
+            if (seen == null) {
+                once.put(a[i], new int[]{i, -2});
+            } else {
+                seen[0] = -1;
+            }
+        }
+        for (int j = b0; j < b1; j++) {
+            int[] seen = once.get(b[j]);
+            if (seen != null) {
+                seen[1] = seen[1] == -2 ? j : -1;
+            }
+        }
+        int[] pairs = new int[a1 - a0];
+        int count = 0;
+        for (int i = a0; i < a1; i++) {
+            int[] seen = once.get(a[i]);
+            if (seen[0] == i && seen[1] >= 0) {
+                pairs[count++] = i;
+            }
+        }
+        if (count == 0) {
+            if (a1 - a0 == b1 - b0) {
+                while (a0 < a1) {
+                    link(a0++, b0++);
+                }
+            }
+            return;
+        }
+
+        // longest increasing run of new positions, by patience sorting
+        int[] tails = new int[count];
+        int[] previous = new int[count];
+        int piles = 0;
+        for (int k = 0; k < count; k++) {
+            int position = once.get(a[pairs[k]])[1];
+            int low = 0;
+            int high = piles;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (once.get(a[pairs[tails[mid]]])[1] < position) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[k] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = k;
+            if (low == piles) {
+                piles++;
+            }
+        }
+        int nextA = a1;
+        int nextB = b1;
+        for (int k = tails[piles - 1]; k >= 0; k = previous[k]) {
+            int i = pairs[k];
+            int j = once.get(a[i])[1];
+            link(i, j);
+            gaps.push(new int[]{i + 1, nextA, j + 1, nextB});
+            nextA = i;
+            nextB = j;
+        }
+        gaps.push(new int[]{a0, nextA, b0, nextB});
+    }
+
+    private void link(int oldIndex, int newIndex) {
+        oldToNew[oldIndex + 1] = newIndex + 1;
+        newToOld[newIndex + 1] = oldIndex + 1;
+    }
+
+    private static int[] intern(List<String> lines, Map<String, Integer> ids) {
+        int[] result = new int[lines.size()];
+        for (int i = 0; i < result.length; i++) {
+            Integer id = ids.putIfAbsent(lines.get(i).trim(), ids.size());
+            result[i] = id != null ? id : ids.size() - 1;
+        }
+        return result;
+    }
+
+    private static List<String> lines(String source) {
+        return source.isEmpty() ? Collections.emptyList() : Arrays.asList(source.split("\r\n|\r|\n", -1));
+    }
+}
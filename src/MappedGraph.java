@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of a graph file written by {@link GraphBinaryWriter}. The file is mapped
+ * into memory and every accessor reads straight from the mapping, so opening a graph costs
+ * only the header and label dictionary, and iterating edges neither parses nor allocates:
+ *
+ * <pre>
+ * int index = graph.indexOf(line);
+ * for (int edge = graph.edgeStart(index); edge < graph.edgeEnd(index); edge++) {
+ *     use(graph.target(edge), graph.label(edge));
+ * }
+ * </pre>
+ *
+ * The mapping stays valid after the file is closed, and instances may be shared between
+ * threads. Files are limited to 2 GB, the most a single mapping can hold.
+ */
+class MappedGraph {
+    private final int lineCount;
+    private final int edgeCount;
+    private final IntBuffer lines;
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final ByteBuffer labels;
+    private final EdgeLabel[] dictionary;
+
+    private MappedGraph(MappedByteBuffer file) throws IOException {
+        file.order(ByteOrder.LITTLE_ENDIAN);
+        if (file.limit() < GraphBinaryWriter.HEADER_BYTES || file.getInt(0) != GraphBinaryWriter.MAGIC) {
+            throw new IOException("Not a binary dependency graph");
+        }
+        if (file.getInt(4) != GraphBinaryWriter.VERSION) {
+            throw new IOException("Unsupported binary graph version " + file.getInt(4));
+        }
+        lineCount = file.getInt(8);
+        edgeCount = file.getInt(12);
+        int labelCount = file.getInt(16);
+        long dictionaryOffset = file.getLong(24);
+        if (lineCount < 0 || edgeCount < 0 || dictionaryOffset > file.limit() || dictionaryOffset
+                != GraphBinaryWriter.HEADER_BYTES + 4L * (2 * (long) lineCount + 1) + 5L * edgeCount) {
+            throw new IOException("Corrupt binary graph");
+        }
+        int linesAt = GraphBinaryWriter.HEADER_BYTES;
+        int offsetsAt = linesAt + 4 * lineCount;
+        int targetsAt = offsetsAt + 4 * (lineCount + 1);
+        int labelsAt = targetsAt + 4 * edgeCount;
+        lines = section(file, linesAt, 4 * lineCount).asIntBuffer();
+        offsets = section(file, offsetsAt, 4 * (lineCount + 1)).asIntBuffer();
+        targets = section(file, targetsAt, 4 * edgeCount).asIntBuffer();
+        labels = section(file, labelsAt, edgeCount);
+
+        dictionary = new EdgeLabel[labelCount];
+        ByteBuffer entries = section(file, (int) dictionaryOffset, file.limit() - (int) dictionaryOffset);
+        for (int i = 0; i < labelCount; i++) {
+            byte[] text = new byte[entries.getShort()];
+            entries.get(text);
+            dictionary[i] = EdgeLabel.fromText(new String(text, StandardCharsets.UTF_8));
+        }
+    }
+
+    static MappedGraph open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary graph larger than 2 GB: " + file);
+            }
+            return new MappedGraph(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static ByteBuffer section(ByteBuffer file, int at, int length) {
+        return file.duplicate().position(at).limit(at + length).slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    int lineCount() {
+        return lineCount;
+    }
+
+    int edgeCount() {
+        return edgeCount;
+    }
+
+    int line(int index) {
+        return lines.get(index);
+    }
+
+    int edgeStart(int index) {
+        return offsets.get(index);
+    }
+
+    int edgeEnd(int index) {
+        return offsets.get(index + 1);
+    }
+
+    int target(int edge) {
+        return targets.get(edge);
+    }
+
+    EdgeLabel label(int edge) {
+        return dictionary[labels.get(edge)];
+    }
+
+    /** Index of {@code line} in {@link #line(int)} order, or -1 if it has no edges. */
+    int indexOf(int line) {
+        int low = 0;
+        int high = lineCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = lines.get(mid);
+            if (value < line) {
+                low = mid + 1;
+            } else if (value > line) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Copies the graph onto the heap, for code that works on {@link CompactGraph}. */
+    CompactGraph toCompactGraph() {
+        int[] lineArray = new int[lineCount];
+        int[] offsetArray = new int[lineCount + 1];
+        int[] targetArray = new int[edgeCount];
+        byte[] labelArray = new byte[edgeCount];
+        lines.get(0, lineArray);
+        offsets.get(0, offsetArray);
+        targets.get(0, targetArray);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            labelArray[edge] = label(edge).code();
+        }
+        return new CompactGraph(lineArray, offsetArray, targetArray, labelArray);
+    }
+}
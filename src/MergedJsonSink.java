@@ -0,0 +1,55 @@
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes every graph into one JSON object keyed by source path. Each worker reserves its
+ * byte range with an atomic counter and writes it with a positional write, so results are
+ * never funnelled through a shared lock. Entry order follows completion order.
+ */
+class MergedJsonSink implements GraphSink {
+    private static final byte[] OPEN = "{\n".getBytes(StandardCharsets.UTF_8);
+
+    private final FileChannel channel;
+    private final boolean pretty;
+    private final AtomicLong position = new AtomicLong(OPEN.length);
+
+    MergedJsonSink(Path file, boolean pretty) throws IOException {
+        this.pretty = pretty;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        writeAt(OPEN, 0);
+    }
+
+    @Override
+    public void write(String key, CompactGraph graph) throws IOException {
+        // Every entry reserves room for a separator; the one that lands first pads it with blanks
+        byte[] entry = (JSONObject.quote(key) + ": " + GraphJsonWriter.toString(graph, pretty)).getBytes(StandardCharsets.UTF_8);
+        long at = position.getAndAdd(entry.length + 2L);
+        byte[] separator = at == OPEN.length ? new byte[]{' ', ' '} : new byte[]{',', '\n'};
+        writeAt(separator, at);
+        writeAt(entry, at + 2);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeAt("\n}\n".getBytes(StandardCharsets.UTF_8), position.get());
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeAt(byte[] bytes, long at) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            at += channel.write(buffer, at);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What the field data-flow rule needs to know about one method, collected in a single walk,
+ * plus the method's {@link MethodSymbol} for call resolution.
+ */
+class MethodFacts {
+    final List<FlowEvent> events = new ArrayList<>();
+    final MethodSymbol symbol;
+
+    MethodFacts(MethodSymbol symbol) {
+        this.symbol = symbol;
+    }
+}
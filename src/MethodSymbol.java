@@ -0,0 +1,29 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A method declaration as callers see it: where it is, what it accepts and the lines of its
+ * return statements. This is the summary every resolved call site links against.
+ */
+class MethodSymbol {
+    /** Qualified name of the declaring type, or null outside any type. */
+    final String type;
+    final String name;
+    final int line;
+    /** Simple type name of each parameter; null for type variables, which accept anything. */
+    final String[] parameterTypes;
+    final boolean varargs;
+    final List<Integer> returns = new ArrayList<>();
+
+    MethodSymbol(String type, String name, int line, String[] parameterTypes, boolean varargs) {
+        this.type = type;
+        this.name = name;
+        this.line = line;
+        this.parameterTypes = parameterTypes;
+        this.varargs = varargs;
+    }
+
+    boolean accepts(int arguments) {
+        return varargs ? arguments >= parameterTypes.length - 1 : arguments == parameterTypes.length;
+    }
+}
@@ -0,0 +1,10 @@
+/** A name together with the line it was seen on: a class declaration or a "new T(...)". */
+class NamedLine {
+    final String name;
+    final int line;
+
+    NamedLine(String name, int line) {
+        this.name = name;
+        this.line = line;
+    }
+}
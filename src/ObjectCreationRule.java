@@ -0,0 +1,38 @@
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * class_instantiation and constructor_call edges from "new T(...)" to the declaration of T
+ * and its constructor.
+ */
+class ObjectCreationRule implements EdgeRule {
+    private final List<NamedLine> creations = new ArrayList<>();
+
+    @Override
+    public String name() {
+        return "object_creation";
+    }
+
+    @Override
+    public void enter(Node parent, Node node, int line, AnalysisContext ctx) {
+        if (node instanceof ObjectCreationExpr) {
+            creations.add(new NamedLine(((ObjectCreationExpr) node).getTypeAsString(), line));
+        }
+    }
+
+    @Override
+    public void finish(AnalysisContext ctx) {
+        for (NamedLine creation : creations) {
+            for (int classLine : ctx.index().classLines(creation.name)) {
+                ctx.addEdge(creation.line, classLine, EdgeLabel.CLASS_INSTANTIATION);
+            }
+            Integer constructorLine = ctx.constructorDecls.get(creation.name);
+            if (constructorLine != null) {
+                ctx.addEdge(creation.line, constructorLine, EdgeLabel.CONSTRUCTOR_CALL);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+
+/**
+ * Reusable {@link JavaParser}s sharing one {@link ParserConfiguration}. A parse borrows an
+ * idle parser or creates one when none is free, so callers never wait; at most
+ * {@code capacity} idle parsers are kept. An idle parser holds on to the tokens and
+ * characters of the last file it parsed, so a pool of capacity 0, which keeps none, suits
+ * the low-memory mode. The configuration must not change once the pool is in use.
+ */
+class ParserPool {
+    private final ParserConfiguration configuration;
+    private final BlockingQueue<JavaParser> idle;
+
+    ParserPool(ParserConfiguration configuration, int capacity) {
+        this.configuration = configuration;
+        this.idle = capacity > 0 ? new ArrayBlockingQueue<>(capacity) : new SynchronousQueue<>();
+    }
+
+    ParserConfiguration configuration() {
+        return configuration;
+    }
+
+    /** Parses source bytes in the configured character encoding. */
+    CompilationUnit parse(byte[] content) {
+        JavaParser parser = borrow();
+        try {
+            return parse(parser, content);
+        } finally {
+            idle.offer(parser);
+        }
+    }
+
+    CompilationUnit parse(Reader source) {
+        JavaParser parser = borrow();
+        try {
+            return unwrap(parser.parse(source));
+        } finally {
+            idle.offer(parser);
+        }
+    }
+
+    private JavaParser borrow() {
+        JavaParser parser = idle.poll();
+        return parser != null ? parser : new JavaParser(configuration);
+    }
+
+    /** Parses source bytes with {@code parser}, outside any pool. */
+    static CompilationUnit parse(JavaParser parser, byte[] content) {
+        return unwrap(parser.parse(new ByteArrayInputStream(content)));
+    }
+
+    /** The parsed unit, or a {@link ParseProblemException} listing what went wrong. */
+    static CompilationUnit unwrap(ParseResult<CompilationUnit> result) {
+        if (!result.isSuccessful() || !result.getResult().isPresent()) {
+            throw new ParseProblemException(result.getProblems());
+        }
+        return result.getResult().get();
+    }
+}
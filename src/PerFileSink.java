@@ -0,0 +1,40 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes one graph per source file, mirroring the source tree under an output directory
+ * ({@code pkg/Foo.java} becomes {@code pkg/Foo.json}, or {@code pkg/Foo.dgb} in the binary
+ * format). Workers never share a file.
+ */
+class PerFileSink implements GraphSink {
+    private final Path outputDir;
+    private final boolean pretty;
+    private final boolean binary;
+
+    PerFileSink(Path outputDir, boolean pretty, boolean binary) {
+        this.outputDir = outputDir;
+        this.pretty = pretty;
+        this.binary = binary;
+    }
+
+    @Override
+    public void write(String key, CompactGraph graph) throws IOException {
+        String name = key.endsWith(".java") ? key.substring(0, key.length() - 5) : key;
+        Path target = outputDir.resolve(name + (binary ? ".dgb" : ".json"));
+        Files.createDirectories(target.getParent());
+        if (binary) {
+            GraphBinaryWriter.write(graph, target);
+            return;
+        }
+        try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            new GraphJsonWriter(writer, pretty).write(graph);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
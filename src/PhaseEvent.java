@@ -0,0 +1,26 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event spanning one analysis phase of one source file. Costs next to nothing
+ * unless a recording with this event enabled is running.
+ */
+@Name("dependencygraph.Phase")
+@Label("Analysis Phase")
+@Category("Dependency Graph")
+@Description("Parsing, walking, one edge rule or JSON output of a single source file")
+@StackTrace(false)
+class PhaseEvent extends Event {
+    @Label("File")
+    String file;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Edges Added")
+    long edges;
+}
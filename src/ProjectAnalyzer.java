@@ -0,0 +1,267 @@
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Analyses every .java file under a set of source roots on a work-stealing pool. Workers
+ * borrow parsers from a {@link ParserPool}, and results go straight to a {@link GraphSink}.
+ */
+class ProjectAnalyzer {
+    private final int threads;
+    private final GraphCache cache;
+    private final AnalysisStats stats;
+    private final GraphForm form;
+    private final ParserPool parsers;
+    private final CallLinker linker;
+    private final boolean parallelPhases;
+    private final boolean lean;
+    private long budgetMillis;
+    private long budgetMegabytes;
+    private boolean degrade;
+
+    /**
+     * {@code cache} may be null to always analyse from scratch; {@code stats}, if not null,
+     * receives the phase timings and counters of every file that is actually analysed.
+     * Graphs are handed to the sink in the given {@code form}. {@code linker}, if not null,
+     * receives the symbols of every analysed file for cross-file call linking. With
+     * {@code parallelPhases}, idle workers also help finish the passes of large files. With
+     * {@code lean}, trees are parsed and analysed in the low-memory mode of {@link LeanTree}.
+     */
+    ProjectAnalyzer(int threads, GraphCache cache, AnalysisStats stats, GraphForm form, CallLinker linker,
+                    boolean parallelPhases, boolean lean) {
+        this.threads = threads;
+        this.cache = cache;
+        this.stats = stats;
+        this.form = form;
+        this.parsers = lean ? new ParserPool(LeanTree.configuration(), 0) : new ParserPool(new ParserConfiguration(), threads);
+        this.linker = linker;
+        this.parallelPhases = parallelPhases;
+        this.lean = lean;
+    }
+
+    /**
+     * Limits the analysis of each file to {@code millis} of wall time and {@code megabytes} of
+     * allocation, 0 meaning no limit (see {@link FileBudget}). A file over budget is skipped as
+     * failed or, with {@code degrade}, analysed again without the data-flow pass.
+     */
+    ProjectAnalyzer budget(long millis, long megabytes, boolean degrade) {
+        this.budgetMillis = millis;
+        this.budgetMegabytes = megabytes;
+        this.degrade = degrade;
+        return this;
+    }
+
+    static final class SourceFile {
+        final Path path;
+        final String key;
+
+        SourceFile(Path root, Path path) {
+            this.path = path;
+            this.key = root.relativize(path).toString().replace('\\', '/');
+        }
+    }
+
+    static final class Summary {
+        final int files;
+        final int failed;
+        final int degraded;
+        final int cached;
+        final long nanos;
+        /** Failed, degraded and slowest files. */
+        final BatchReport report;
+
+        Summary(int files, int cached, long nanos, BatchReport report) {
+            this.files = files;
+            this.failed = report.failedCount();
+            this.degraded = report.degradedCount();
+            this.cached = cached;
+            this.nanos = nanos;
+            this.report = report;
+        }
+
+        double filesPerSecond() {
+            return nanos == 0 ? 0 : files * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Analysed %d files (%d failed, %d degraded, %d from cache) in %.2f s, %.1f files/s",
+                    files, failed, degraded, cached, nanos / 1e9, filesPerSecond());
+        }
+    }
+
+    /** Every .java file below the given roots; a root may also be a single file. */
+    static List<SourceFile> discover(List<Path> roots) throws IOException {
+        List<SourceFile> sources = new ArrayList<>();
+        for (Path root : roots) {
+            if (Files.isRegularFile(root)) {
+                sources.add(new SourceFile(root.toAbsolutePath().getParent(), root.toAbsolutePath()));
+                continue;
+            }
+            try (Stream<Path> paths = Files.walk(root)) {
+                for (Path path : paths.filter(p -> p.toString().endsWith(".java") && Files.isRegularFile(p))
+                        .sorted()
+                        .collect(Collectors.toList())) {
+                    sources.add(new SourceFile(root, path));
+                }
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Analyses every source, one task per file and the largest files first, so one slow file
+     * does not hold up the end of the run. A file that fails is reported and skipped; one that
+     * exceeds its {@link #budget} is skipped or analysed again in degraded mode.
+     */
+    Summary analyze(List<SourceFile> sources, GraphSink sink) throws InterruptedException {
+        AtomicInteger cached = new AtomicInteger();
+        BatchReport report = new BatchReport();
+        List<Callable<Void>> tasks = new ArrayList<>(sources.size());
+        for (SourceFile source : largestFirst(sources)) {
+            tasks.add(() -> {
+                if (analyze(source, sink, report)) {
+                    cached.incrementAndGet();
+                }
+                return null;
+            });
+        }
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invokeAll(tasks);
+        } finally {
+            pool.shutdown();
+        }
+        return new Summary(sources.size(), cached.get(), System.nanoTime() - start, report);
+    }
+
+    /**
+     * Analyses one source into {@code sink}, through the cache and within the file's
+     * {@link #budget}, and records its outcome in {@code report}. Returns whether the outcome
+     * came from the cache.
+     */
+    boolean analyze(SourceFile source, GraphSink sink, BatchReport report) {
+        long started = System.nanoTime();
+        String hash = null;
+        AnalysisStats fileStats = new AnalysisStats(source.key);
+        try {
+            byte[] content;
+            AnalysisStats.Timer readTimer = fileStats.time("read");
+            try {
+                content = Files.readAllBytes(source.path);
+            } finally {
+                readTimer.close();
+            }
+            GraphCache.Entry entry = null;
+            if (cache != null) {
+                hash = cache.key(content, form);
+                entry = cache.get(hash);
+            }
+            if (entry != null) {
+                if (entry.failure != null) {
+                    report.failed(source.key, entry.failure);
+                    sink.failed(source.key, entry.failure);
+                    System.err.println("Failed to analyse " + source.path + ": " + entry.failure);
+                    return true;
+                }
+                if (linker != null) {
+                    linker.add(source.key, entry.symbols);
+                }
+                sink.write(source.key, form.present(entry.graph));
+                return true;
+            }
+            FileBudget budget = FileBudget.start(budgetMillis, budgetMegabytes);
+            CompactGraph graph;
+            FileSymbols[] symbols = new FileSymbols[1];
+            String degraded = null;
+            try {
+                CompilationUnit cu;
+                AnalysisStats.Timer parseTimer = fileStats.time("parse");
+                try {
+                    cu = parsers.parse(content);
+                } finally {
+                    parseTimer.close();
+                }
+                try {
+                    graph = new GraphAnalyzer(form.ranged(), parallelPhases, lean)
+                            .analyze(cu, fileStats, s -> symbols[0] = s, budget);
+                } catch (FileBudget.Exceeded e) {
+                    if (!degrade) {
+                        throw e;
+                    }
+                    degraded = e.getMessage();
+                    if (lean) {
+                        // the first attempt has already released parts of the tree
+                        cu = parsers.parse(content);
+                    }
+                    graph = new GraphAnalyzer(GraphAnalyzer::degradedRules, form.ranged(), parallelPhases, lean)
+                            .analyze(cu, fileStats, s -> symbols[0] = s, budget.restart());
+                }
+            } catch (FileBudget.Exceeded e) {
+                // not cached: whether a file fits its budget depends on the machine
+                throw e;
+            } catch (RuntimeException | StackOverflowError e) {
+                if (cache != null) {
+                    cache.putFailure(hash, firstLine(e));
+                }
+                throw e;
+            }
+            if (degraded != null) {
+                report.degraded(source.key, degraded);
+                System.err.println("Degraded analysis of " + source.path + ": " + degraded);
+            } else if (cache != null) {
+                cache.put(hash, graph, symbols[0]);
+            }
+            if (linker != null) {
+                linker.add(source.key, symbols[0]);
+            }
+            AnalysisStats.Timer jsonTimer = fileStats.time("json");
+            try {
+                sink.write(source.key, form.present(graph));
+            } finally {
+                jsonTimer.close();
+            }
+        } catch (Exception | StackOverflowError | OutOfMemoryError e) {
+            report.failed(source.key, firstLine(e));
+            sink.failed(source.key, firstLine(e));
+            System.err.println("Failed to analyse " + source.path + ": " + firstLine(e));
+        } finally {
+            report.timed(source.key, System.nanoTime() - started);
+        }
+        if (stats != null) {
+            stats.merge(fileStats);
+        }
+        return false;
+    }
+
+    private static List<SourceFile> largestFirst(List<SourceFile> sources) {
+        Map<SourceFile, Long> sizes = new HashMap<>();
+        for (SourceFile source : sources) {
+            try {
+                sizes.put(source, Files.size(source.path));
+            } catch (IOException e) {
+                sizes.put(source, 0L); // reported when the task fails to read it
+            }
+        }
+        List<SourceFile> ordered = new ArrayList<>(sources);
+        ordered.sort(Comparator.comparing(sizes::get).reversed());
+        return ordered;
+    }
+
+    static String firstLine(Throwable e) {
+        String message = String.valueOf(e.getMessage()).trim();
+        int newline = message.indexOf('\n');
+        return e.getClass().getSimpleName() + ": " + (newline < 0 ? message : message.substring(0, newline));
+    }
+}
@@ -0,0 +1,186 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Worklist solver for reaching definitions over a {@link ControlFlowGraph}. Every definition
+ * is a bit; each block's GEN, KILL and OUT sets are rows of {@code long} words in flat
+ * arrays, so one transfer is a few word-wide operations per block even for methods with
+ * thousands of definitions. The worklist is ordered by reverse postorder, which settles
+ * loop-free code in a single pass and nested loops from the inside out.
+ */
+class ReachingDefinitions {
+    private ReachingDefinitions() {
+    }
+
+    /**
+     * The (use line, definition line) pairs of every use reached by a definition, flattened.
+     * Pairs on a single line are left out.
+     */
+    static int[] dependencies(ControlFlowGraph cfg) {
+        int definitions = cfg.definitionCount();
+        if (definitions == 0) {
+            return new int[0];
+        }
+        int blocks = cfg.blockCount();
+        int words = (definitions + 63) >>> 6;
+
+        // Definitions of each variable, as a list and as a mask
+        int[][] definitionsOf = new int[cfg.variableCount()][];
+        int[] counts = new int[cfg.variableCount()];
+        for (int d = 0; d < definitions; d++) {
+            counts[cfg.definitionVariable(d)]++;
+        }
+        long[] masks = new long[cfg.variableCount() * words];
+        for (int v = 0; v < counts.length; v++) {
+            definitionsOf[v] = new int[counts[v]];
+            counts[v] = 0;
+        }
+        for (int d = 0; d < definitions; d++) {
+            int v = cfg.definitionVariable(d);
+            definitionsOf[v][counts[v]++] = d;
+            masks[v * words + (d >>> 6)] |= 1L << d;
+        }
+
+        int[][] actions = new int[blocks][];
+        int[][] successors = new int[blocks][];
+        int[] predecessorCounts = new int[blocks];
+        long[] gen = new long[blocks * words];
+        long[] kill = new long[blocks * words];
+        for (int b = 0; b < blocks; b++) {
+            actions[b] = cfg.actions(b);
+            successors[b] = cfg.successors(b);
+            for (int s : successors[b]) {
+                predecessorCounts[s]++;
+            }
+            int row = b * words;
+            for (int i = 0; i < actions[b].length; i += 2) {
+                if ((actions[b][i] & 1) == 0) continue;
+                int v = actions[b][i] >>> 1;
+                int d = actions[b][i + 1];
+                for (int w = 0; w < words; w++) {
+                    gen[row + w] &= ~masks[v * words + w];
+                    kill[row + w] |= masks[v * words + w];
+                }
+                gen[row + (d >>> 6)] |= 1L << d;
+            }
+        }
+        int[][] predecessors = new int[blocks][];
+        for (int b = 0; b < blocks; b++) {
+            predecessors[b] = new int[predecessorCounts[b]];
+            predecessorCounts[b] = 0;
+        }
+        for (int b = 0; b < blocks; b++) {
+            for (int s : successors[b]) {
+                predecessors[s][predecessorCounts[s]++] = b;
+            }
+        }
+
+        long[] out = new long[blocks * words];
+        long[] in = new long[words];
+        // Always take the pending block earliest in reverse postorder, so inner loops settle
+        // before the code after them is revisited
+        int[] order = reversePostorder(successors);
+        int[] position = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            position[order[i]] = i;
+        }
+        BitSet pending = new BitSet(blocks);
+        pending.set(0, blocks);
+        for (int next = pending.nextSetBit(0); next >= 0; next = pending.nextSetBit(0)) {
+            pending.clear(next);
+            int b = order[next];
+            merge(predecessors[b], out, words, in);
+            int row = b * words;
+            boolean changed = false;
+            for (int w = 0; w < words; w++) {
+                long value = gen[row + w] | (in[w] & ~kill[row + w]);
+                if (value != out[row + w]) {
+                    out[row + w] = value;
+                    changed = true;
+                }
+            }
+            if (changed) {
+                for (int s : successors[b]) {
+                    pending.set(position[s]);
+                }
+            }
+        }
+
+        // Replay each block from its IN set to find what reaches every use
+        int[] pairs = new int[64];
+        int pairCount = 0;
+        for (int b = 0; b < blocks; b++) {
+            merge(predecessors[b], out, words, in);
+            int[] blockActions = actions[b];
+            for (int i = 0; i < blockActions.length; i += 2) {
+                int v = blockActions[i] >>> 1;
+                if ((blockActions[i] & 1) == 1) {
+                    int d = blockActions[i + 1];
+                    for (int w = 0; w < words; w++) {
+                        in[w] &= ~masks[v * words + w];
+                    }
+                    in[d >>> 6] |= 1L << d;
+                    continue;
+                }
+                int useLine = blockActions[i + 1];
+                for (int d : definitionsOf[v]) {
+                    int definitionLine = cfg.definitionLine(d);
+                    if ((in[d >>> 6] & (1L << d)) != 0 && definitionLine != useLine) {
+                        if (pairCount == pairs.length) {
+                            pairs = Arrays.copyOf(pairs, pairCount * 2);
+                        }
+                        pairs[pairCount++] = useLine;
+                        pairs[pairCount++] = definitionLine;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(pairs, pairCount);
+    }
+
+    private static void merge(int[] predecessors, long[] out, int words, long[] in) {
+        Arrays.fill(in, 0L);
+        for (int p : predecessors) {
+            int row = p * words;
+            for (int w = 0; w < words; w++) {
+                in[w] |= out[row + w];
+            }
+        }
+    }
+
+    /** Blocks reachable from the entry in reverse postorder, followed by the unreachable ones. */
+    private static int[] reversePostorder(int[][] successors) {
+        int blocks = successors.length;
+        int[] order = new int[blocks];
+        int position = blocks;
+        boolean[] visited = new boolean[blocks];
+        int[] stack = new int[blocks];
+        int[] nextSuccessor = new int[blocks];
+        int depth = 0;
+        stack[depth++] = 0;
+        visited[0] = true;
+        while (depth > 0) {
+            int b = stack[depth - 1];
+            if (nextSuccessor[b] < successors[b].length) {
+                int s = successors[b][nextSuccessor[b]++];
+                if (!visited[s]) {
+                    visited[s] = true;
+                    stack[depth++] = s;
+                }
+            } else {
+                depth--;
+                order[--position] = b;
+            }
+        }
+        // position now counts the unreachable blocks; move them to the end
+        int[] result = new int[blocks];
+        System.arraycopy(order, position, result, 0, blocks - position);
+        int next = blocks - position;
+        for (int b = 0; b < blocks; b++) {
+            if (!visited[b]) {
+                result[next++] = b;
+            }
+        }
+        return result;
+    }
+}
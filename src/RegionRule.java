@@ -0,0 +1,109 @@
+import com.github.javaparser.ast.Node;
+
+import java.util.Arrays;
+
+/**
+ * Base for rules that link every node of a region (a class, a method, a branch body) to the
+ * region's anchor line. Open regions are kept on a stack, so each node is visited once no
+ * matter how deeply regions nest.
+ *
+ * Edges are buffered and only handed to the graph in {@link #finish}, so each rule inserts
+ * them in the same order as the original one-pass-per-kind implementation did. When the
+ * context is range-encoded, each region is handed over once as a line interval instead; its
+ * end is the last line a node inside it begins on, tracked as regions close.
+ */
+abstract class RegionRule implements EdgeRule {
+    private final EdgeLabel label;
+    private Node[] owners = new Node[16];
+    private int[] anchors = new int[16];
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int depth;
+    private int[] edges = new int[64];
+    private int edgeCount;
+
+    RegionRule(EdgeLabel label) {
+        this.label = label;
+    }
+
+    @Override
+    public String name() {
+        return label.text();
+    }
+
+    /** Returns the anchor line of the region {@code node} opens, or -1 if it opens none. */
+    abstract int anchorFor(Node parent, Node node, int line);
+
+    @Override
+    public void enter(Node parent, Node node, int line, AnalysisContext ctx) {
+        int anchor = anchorFor(parent, node, line);
+        if (depth > 0 && line > ends[depth - 1]) {
+            ends[depth - 1] = line;
+        }
+        if (anchor >= 0) {
+            if (depth == owners.length) {
+                owners = Arrays.copyOf(owners, depth * 2);
+                anchors = Arrays.copyOf(anchors, depth * 2);
+                starts = Arrays.copyOf(starts, depth * 2);
+                ends = Arrays.copyOf(ends, depth * 2);
+            }
+            owners[depth] = node;
+            starts[depth] = line;
+            ends[depth] = line;
+            anchors[depth++] = anchor;
+        }
+        if (ctx.ranges) {
+            return;
+        }
+        for (int i = 0; i < depth; i++) {
+            if (anchors[i] != line) {
+                buffer(line, anchors[i]);
+            }
+        }
+    }
+
+    @Override
+    public void exit(Node parent, Node node, AnalysisContext ctx) {
+        if (depth > 0 && owners[depth - 1] == node) {
+            owners[--depth] = null;
+            if (depth > 0 && ends[depth] > ends[depth - 1]) {
+                ends[depth - 1] = ends[depth];
+            }
+            // a region holding only its anchor line has no edges
+            if (ctx.ranges && (starts[depth] != anchors[depth] || ends[depth] != anchors[depth])) {
+                bufferRegion(starts[depth], ends[depth], anchors[depth]);
+            }
+        }
+    }
+
+    @Override
+    public void finish(AnalysisContext ctx) {
+        if (ctx.ranges) {
+            for (int i = 0; i < edgeCount; i += 3) {
+                ctx.addRegion(edges[i], edges[i + 1], edges[i + 2], label);
+            }
+        } else {
+            for (int i = 0; i < edgeCount; i += 2) {
+                ctx.addEdge(edges[i], edges[i + 1], label);
+            }
+        }
+        edges = null;
+    }
+
+    private void buffer(int from, int to) {
+        if (edgeCount == edges.length) {
+            edges = Arrays.copyOf(edges, edgeCount * 2);
+        }
+        edges[edgeCount++] = from;
+        edges[edgeCount++] = to;
+    }
+
+    private void bufferRegion(int start, int end, int anchor) {
+        if (edgeCount + 3 > edges.length) {
+            edges = Arrays.copyOf(edges, edges.length * 2);
+        }
+        edges[edgeCount++] = start;
+        edges[edgeCount++] = end;
+        edges[edgeCount++] = anchor;
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * The scope and control regions of a range-encoded graph. A region (start, end, anchor,
+ * label) stands for an edge to {@code anchor} from every line in {@code [start, end]} on which
+ * an AST node begins, except the anchor line itself; those lines are kept in ascending order
+ * so the edges can be derived exactly. {@code end} is the last line a node of the region
+ * begins on, not the line of its closing brace.
+ */
+class RegionTable {
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] anchors;
+    private final byte[] labels;
+    private final int[] nodeLines;
+
+    RegionTable(int[] starts, int[] ends, int[] anchors, byte[] labels, int[] nodeLines) {
+        this.starts = starts;
+        this.ends = ends;
+        this.anchors = anchors;
+        this.labels = labels;
+        this.nodeLines = nodeLines;
+    }
+
+    int size() {
+        return starts.length;
+    }
+
+    int start(int region) {
+        return starts[region];
+    }
+
+    int end(int region) {
+        return ends[region];
+    }
+
+    int anchor(int region) {
+        return anchors[region];
+    }
+
+    EdgeLabel label(int region) {
+        return EdgeLabel.fromCode(labels[region]);
+    }
+
+    int nodeLineCount() {
+        return nodeLines.length;
+    }
+
+    int nodeLine(int index) {
+        return nodeLines[index];
+    }
+}
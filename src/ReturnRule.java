@@ -0,0 +1,21 @@
+/**
+ * parameter-out edges from every call site to each return statement of the methods of this
+ * file it resolves to.
+ */
+class ReturnRule implements EdgeRule {
+    @Override
+    public String name() {
+        return "return";
+    }
+
+    @Override
+    public void finish(AnalysisContext ctx) {
+        for (CallSite call : ctx.symbols.calls) {
+            for (MethodSymbol method : ctx.index().callees(call)) {
+                for (int returnLine : method.returns) {
+                    ctx.addEdge(call.line, returnLine, EdgeLabel.PARAMETER_OUT);
+                }
+            }
+        }
+    }
+}
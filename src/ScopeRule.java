@@ -0,0 +1,29 @@
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+
+/**
+ * class_scope and method_scope edges: every node inside a class or method depends on the
+ * declaration line.
+ */
+class ScopeRule extends RegionRule {
+    private final Class<? extends Node> scopeType;
+
+    private ScopeRule(EdgeLabel label, Class<? extends Node> scopeType) {
+        super(label);
+        this.scopeType = scopeType;
+    }
+
+    static ScopeRule classScope() {
+        return new ScopeRule(EdgeLabel.CLASS_SCOPE, ClassOrInterfaceDeclaration.class);
+    }
+
+    static ScopeRule methodScope() {
+        return new ScopeRule(EdgeLabel.METHOD_SCOPE, MethodDeclaration.class);
+    }
+
+    @Override
+    int anchorFor(Node parent, Node node, int line) {
+        return scopeType.isInstance(node) ? line : -1;
+    }
+}
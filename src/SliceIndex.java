@@ -0,0 +1,152 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumSet;
+
+/**
+ * Program slices over a finished graph. An edge from line a to line b means a depends on b,
+ * so a backward slice follows edges and a forward slice follows them in reverse. Lines are
+ * numbered densely, and both directions are kept in compressed-sparse-row arrays built once;
+ * a query is then a breadth-first search with a bitset of visited lines. The index is
+ * immutable, so any number of threads may query it at once.
+ */
+class SliceIndex {
+    /** Every label; the default filter. */
+    static final Collection<EdgeLabel> ALL = EnumSet.allOf(EdgeLabel.class);
+
+    private final int[] lines;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final byte[] outLabels;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final byte[] inLabels;
+
+    /** Indexes {@code graph}; a range-encoded graph is flattened first. */
+    SliceIndex(CompactGraph graph) {
+        graph = graph.flatten(false);
+        int edges = graph.edgeCount();
+        int[] all = new int[graph.lineCount() + edges];
+        for (int i = 0; i < graph.lineCount(); i++) {
+            all[i] = graph.line(i);
+        }
+        for (int edge = 0; edge < edges; edge++) {
+            all[graph.lineCount() + edge] = graph.target(edge);
+        }
+        Arrays.sort(all);
+        int count = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (i == 0 || all[i] != all[i - 1]) {
+                all[count++] = all[i];
+            }
+        }
+        lines = Arrays.copyOf(all, count);
+
+        outOffsets = new int[count + 1];
+        outTargets = new int[edges];
+        outLabels = new byte[edges];
+        inOffsets = new int[count + 1];
+        inSources = new int[edges];
+        inLabels = new byte[edges];
+        int[] from = new int[edges];
+        for (int i = 0; i < graph.lineCount(); i++) {
+            int node = node(graph.line(i));
+            for (int edge = graph.edgeStart(i); edge < graph.edgeEnd(i); edge++) {
+                from[edge] = node;
+                outTargets[edge] = node(graph.target(edge));
+                outLabels[edge] = graph.label(edge).code();
+                outOffsets[node + 1]++;
+                inOffsets[outTargets[edge] + 1]++;
+            }
+        }
+        for (int node = 0; node < count; node++) {
+            outOffsets[node + 1] += outOffsets[node];
+            inOffsets[node + 1] += inOffsets[node];
+        }
+        // graph edges are already grouped by source, so only the reverse side needs placing
+        int[] next = Arrays.copyOf(inOffsets, count);
+        for (int edge = 0; edge < edges; edge++) {
+            int slot = next[outTargets[edge]]++;
+            inSources[slot] = from[edge];
+            inLabels[slot] = outLabels[edge];
+        }
+    }
+
+    /** The lines {@code line} depends on, directly or not, through edges with the given labels. */
+    int[] backward(int line, Collection<EdgeLabel> labels) {
+        return toLines(reach(line, mask(labels), outOffsets, outTargets, outLabels), line);
+    }
+
+    /** The lines that depend on {@code line}, directly or not, through edges with the given labels. */
+    int[] forward(int line, Collection<EdgeLabel> labels) {
+        return toLines(reach(line, mask(labels), inOffsets, inSources, inLabels), line);
+    }
+
+    /**
+     * The lines on a dependence path from {@code sink} back to {@code source}: those in both
+     * the forward slice of {@code source} and the backward slice of {@code sink}.
+     */
+    int[] chop(int source, int sink, Collection<EdgeLabel> labels) {
+        int mask = mask(labels);
+        BitSet affected = reach(source, mask, inOffsets, inSources, inLabels);
+        BitSet needed = reach(sink, mask, outOffsets, outTargets, outLabels);
+        if (affected == null || needed == null) {
+            return source == sink ? new int[]{source} : new int[0];
+        }
+        affected.and(needed);
+        return toLines(affected, -1);
+    }
+
+    /** Nodes reachable from {@code line}, itself included, or null if no edge touches the line. */
+    private BitSet reach(int line, int mask, int[] offsets, int[] targets, byte[] labels) {
+        int start = Arrays.binarySearch(lines, line);
+        if (start < 0) {
+            return null;
+        }
+        BitSet visited = new BitSet(lines.length);
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        visited.set(start);
+        queue[tail++] = start;
+        while (head < tail) {
+            int node = queue[head++];
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                int target = targets[edge];
+                if ((mask & (1 << labels[edge])) != 0 && !visited.get(target)) {
+                    visited.set(target);
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = target;
+                }
+            }
+        }
+        return visited;
+    }
+
+    /** The lines of {@code nodes} in ascending order; just {@code line} when nodes is null. */
+    private int[] toLines(BitSet nodes, int line) {
+        if (nodes == null) {
+            return new int[]{line};
+        }
+        int[] result = new int[nodes.cardinality()];
+        int i = 0;
+        for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1)) {
+            result[i++] = lines[node];
+        }
+        return result;
+    }
+
+    private int node(int line) {
+        return Arrays.binarySearch(lines, line);
+    }
+
+    private static int mask(Collection<EdgeLabel> labels) {
+        int mask = 0;
+        for (EdgeLabel label : labels) {
+            mask |= 1 << label.code();
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.*;
+
+/**
+ * Lookup tables over the declarations collected by the walk, so the finishing rules answer
+ * "which classes are called X", "which methods can this call invoke" and "which constructor
+ * starts on line n" without scanning every declaration or call site.
+ */
+class SymbolIndex {
+    private final Map<String, List<Integer>> classLines = new HashMap<>();
+    private final Map<Integer, ConstructorFacts> constructorsByLine = new HashMap<>();
+    private final FileSymbols symbols;
+    private final SymbolTable table = new SymbolTable();
+    private final Map<CallSite, List<MethodSymbol>> callees = new IdentityHashMap<>();
+
+    SymbolIndex(AnalysisContext ctx) {
+        for (NamedLine clazz : ctx.classes) {
+            classLines.computeIfAbsent(clazz.name, k -> new ArrayList<>()).add(clazz.line);
+        }
+        for (ConstructorFacts constructor : ctx.constructors) {
+            constructorsByLine.putIfAbsent(constructor.line, constructor);
+        }
+        symbols = ctx.symbols;
+        table.add("", symbols);
+    }
+
+    List<Integer> classLines(String className) {
+        return classLines.getOrDefault(className, Collections.emptyList());
+    }
+
+    /**
+     * The methods of this file {@code call} resolves to; calls into other files are linked
+     * later. Synchronized because the rules that ask may finish concurrently.
+     */
+    synchronized List<MethodSymbol> callees(CallSite call) {
+        return callees.computeIfAbsent(call, c -> {
+            List<MethodSymbol> methods = new ArrayList<>();
+            for (SymbolTable.Callee callee : table.resolve(symbols, c)) {
+                methods.add(callee.method);
+            }
+            return methods;
+        });
+    }
+
+    ConstructorFacts constructorAt(int line) {
+        return constructorsByLine.get(line);
+    }
+}
@@ -0,0 +1,336 @@
+import java.util.*;
+
+/**
+ * Resolves call sites to the methods they can invoke, across any number of files. A call is
+ * matched by the static type of its receiver (or the enclosing types, for an unqualified
+ * call) together with the supertypes of that type, then by name and arity, and finally by
+ * the argument types the walk could infer: candidates whose parameters reject a known
+ * argument type are dropped, and those matching more argument types exactly win. A call
+ * whose receiver type is unknown resolves to nothing.
+ *
+ * Type names are looked up as javac would in order: types of the calling file, single-type
+ * imports, the file's package, then on-demand imports. A qualified name declared by more
+ * than one file is treated as unknown rather than guessed. Type lookups, supertype chains
+ * and call resolutions are memoised, so resolving every call of a project costs one lookup
+ * per distinct call shape in each file. Not thread-safe.
+ */
+class SymbolTable {
+    /** A resolved callee and the file declaring it. */
+    static final class Callee {
+        final String file;
+        final MethodSymbol method;
+
+        Callee(String file, MethodSymbol method) {
+            this.file = file;
+            this.method = method;
+        }
+    }
+
+    private static final List<String> NUMERIC = Arrays.asList("byte", "short", "char", "int", "long", "float", "double");
+    private static final Map<String, String> BOXES = new HashMap<>();
+
+    static {
+        String[] pairs = {"boolean", "Boolean", "byte", "Byte", "short", "Short", "char", "Character",
+                "int", "Integer", "long", "Long", "float", "Float", "double", "Double"};
+        for (int i = 0; i < pairs.length; i += 2) {
+            BOXES.put(pairs[i], pairs[i + 1]);
+        }
+    }
+
+    private final Map<FileSymbols, FileEntry> files = new IdentityHashMap<>();
+    private final Map<String, List<TypeEntry>> typesByQualifiedName = new HashMap<>();
+
+    void add(String file, FileSymbols symbols) {
+        FileEntry entry = new FileEntry(file, symbols);
+        files.put(symbols, entry);
+        for (TypeSymbol type : symbols.types) {
+            TypeEntry typeEntry = new TypeEntry(type, entry);
+            entry.types.computeIfAbsent(type.qualifiedName, k -> new ArrayList<>()).add(typeEntry);
+            entry.typesByName.computeIfAbsent(type.name, k -> new ArrayList<>()).add(typeEntry);
+            typesByQualifiedName.computeIfAbsent(type.qualifiedName, k -> new ArrayList<>()).add(typeEntry);
+        }
+        for (MethodSymbol method : symbols.methods) {
+            entry.methodsByName.computeIfAbsent(method.name, k -> new ArrayList<>()).add(method);
+            for (TypeEntry type : entry.types.getOrDefault(method.type, Collections.emptyList())) {
+                type.methods.computeIfAbsent(method.name, k -> new ArrayList<>()).add(method);
+            }
+        }
+    }
+
+    /** The methods {@code call}, made in the file {@code caller} was added with, can invoke. */
+    List<Callee> resolve(FileSymbols caller, CallSite call) {
+        FileEntry file = files.get(caller);
+        String key = call.receiver + "|" + call.enclosingType + "|" + call.receiverName + "|" + call.name
+                + "|" + Arrays.toString(call.argumentTypes);
+        List<Callee> resolved = file.calls.get(key);
+        if (resolved == null) {
+            resolved = resolveUncached(file, call);
+            file.calls.put(key, resolved);
+        }
+        return resolved;
+    }
+
+    private List<Callee> resolveUncached(FileEntry file, CallSite call) {
+        List<TypeEntry> enclosing = file.types.getOrDefault(call.enclosingType, Collections.emptyList());
+        switch (call.receiver) {
+            case CallSite.IMPLICIT:
+                if (enclosing.isEmpty()) {
+                    return sameFile(file, call);
+                }
+                // the innermost enclosing type with a matching method wins, as in javac
+                for (List<TypeEntry> level = enclosing; !level.isEmpty(); level = outer(file, level.get(0))) {
+                    List<Callee> found = lookup(level, call, file, false);
+                    if (!found.isEmpty()) {
+                        return found;
+                    }
+                }
+                return Collections.emptyList();
+            case CallSite.THIS:
+                return enclosing.isEmpty() ? sameFile(file, call) : lookup(enclosing, call, file, false);
+            case CallSite.SUPER:
+                return lookup(enclosing, call, file, true);
+            case CallSite.TYPE:
+                return lookup(resolveType(file, call.receiverName), call, file, false);
+            case CallSite.NAME:
+            case CallSite.FIELD:
+                List<TypeEntry> fieldType = fieldType(file, enclosing, call.receiverName);
+                if (fieldType != null) {
+                    return lookup(fieldType, call, file, false);
+                }
+                if (call.receiver == CallSite.NAME) {
+                    List<TypeEntry> type = resolveType(file, call.receiverName);
+                    if (!type.isEmpty()) {
+                        return lookup(type, call, file, false);
+                    }
+                }
+                // a receiver of unknown type may be anything, such as Math or a lambda parameter
+                return Collections.emptyList();
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Any method of the calling file with a fitting name and arity, for an unqualified or
+     * {@code this.} call whose enclosing type was not recorded.
+     */
+    private List<Callee> sameFile(FileEntry file, CallSite call) {
+        List<MethodSymbol> candidates = new ArrayList<>();
+        for (MethodSymbol method : file.methodsByName.getOrDefault(call.name, Collections.emptyList())) {
+            if (method.accepts(call.arguments)) {
+                candidates.add(method);
+            }
+        }
+        List<Callee> callees = new ArrayList<>();
+        for (MethodSymbol method : select(candidates, call, file)) {
+            callees.add(new Callee(file.key, method));
+        }
+        return callees;
+    }
+
+    /**
+     * Methods of the given types or their supertypes (only the supertypes with
+     * {@code superOnly}) that fit {@code call}. A method overridden nearer to the receiver
+     * type hides the one it overrides.
+     */
+    private List<Callee> lookup(List<TypeEntry> types, CallSite call, FileEntry caller, boolean superOnly) {
+        List<MethodSymbol> candidates = new ArrayList<>();
+        Map<MethodSymbol, String> owners = new IdentityHashMap<>();
+        Set<String> signatures = new HashSet<>();
+        for (TypeEntry type : types) {
+            for (TypeEntry ancestor : ancestors(type)) {
+                if (superOnly && ancestor == type) continue;
+                for (MethodSymbol method : ancestor.methods.getOrDefault(call.name, Collections.emptyList())) {
+                    if (method.accepts(call.arguments) && signatures.add(Arrays.toString(method.parameterTypes))) {
+                        candidates.add(method);
+                        owners.put(method, ancestor.file.key);
+                    }
+                }
+            }
+        }
+        List<Callee> callees = new ArrayList<>();
+        for (MethodSymbol method : select(candidates, call, caller)) {
+            callees.add(new Callee(owners.get(method), method));
+        }
+        return callees;
+    }
+
+    /** The candidates that match the most known argument types, ignoring those that reject one. */
+    private List<MethodSymbol> select(List<MethodSymbol> candidates, CallSite call, FileEntry caller) {
+        if (candidates.size() < 2) {
+            return candidates;
+        }
+        List<MethodSymbol> best = new ArrayList<>();
+        int bestScore = -1;
+        for (MethodSymbol method : candidates) {
+            int score = score(method, call, caller);
+            if (score > bestScore) {
+                best.clear();
+                bestScore = score;
+            }
+            if (score == bestScore && score >= 0) {
+                best.add(method);
+            }
+        }
+        // inference may be wrong; never lose every candidate over it
+        return best.isEmpty() ? candidates : best;
+    }
+
+    /** 2 per exactly matching argument, 1 per compatible one, -1 if any argument is rejected. */
+    private int score(MethodSymbol method, CallSite call, FileEntry caller) {
+        int score = 0;
+        int fixed = method.varargs ? method.parameterTypes.length - 1 : method.parameterTypes.length;
+        for (int i = 0; i < call.arguments; i++) {
+            String argument = call.argumentTypes[i];
+            String parameter = method.parameterTypes[Math.min(i, fixed)];
+            // a varargs parameter takes elements, unless a single array is passed for it
+            if (i >= fixed && parameter != null && !(call.arguments == fixed + 1 && parameter.equals(argument))) {
+                parameter = parameter.substring(0, parameter.length() - 2);
+            }
+            if (argument == null || parameter == null) continue;
+            if (argument.equals(parameter)) {
+                score += 2;
+            } else if (assignable(argument, parameter, caller)) {
+                score += 1;
+            } else {
+                return -1;
+            }
+        }
+        return score;
+    }
+
+    private boolean assignable(String argument, String parameter, FileEntry caller) {
+        if (parameter.equals("Object")) {
+            return true;
+        }
+        if (argument.equals("null")) {
+            return !BOXES.containsKey(parameter);
+        }
+        int from = NUMERIC.indexOf(argument);
+        int to = NUMERIC.indexOf(parameter);
+        if (from >= 0 && to >= 0) {
+            // widening never reaches char, and char widens to int and beyond only
+            return from <= to && !parameter.equals("char") && !(argument.equals("char") && to < 3);
+        }
+        if (parameter.equals(BOXES.get(argument)) || argument.equals(BOXES.get(parameter))) {
+            return true;
+        }
+        if (argument.equals("String")) {
+            return parameter.equals("CharSequence") || parameter.equals("Comparable");
+        }
+        for (TypeEntry type : resolveType(caller, argument)) {
+            for (TypeEntry ancestor : ancestors(type)) {
+                if (ancestor.type.name.equals(parameter) || ancestor.type.supertypes.contains(parameter)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** The types {@code name} denotes inside {@code file}; empty if not declared in this table. */
+    private List<TypeEntry> resolveType(FileEntry file, String name) {
+        List<TypeEntry> resolved = file.resolvedTypes.get(name);
+        if (resolved != null) {
+            return resolved;
+        }
+        resolved = file.typesByName.get(name);
+        if (resolved == null) {
+            String imported = file.symbols.imports.get(name);
+            if (imported != null) {
+                resolved = unique(imported);
+            }
+        }
+        if (resolved == null) {
+            String packageName = file.symbols.packageName;
+            resolved = unique(packageName.isEmpty() ? name : packageName + "." + name);
+        }
+        for (int i = 0; resolved == null && i < file.symbols.wildcardImports.size(); i++) {
+            resolved = unique(file.symbols.wildcardImports.get(i) + "." + name);
+        }
+        if (resolved == null) {
+            resolved = Collections.emptyList();
+        }
+        file.resolvedTypes.put(name, resolved);
+        return resolved;
+    }
+
+    private List<TypeEntry> unique(String qualifiedName) {
+        List<TypeEntry> types = typesByQualifiedName.get(qualifiedName);
+        return types != null && types.size() == 1 ? types : null;
+    }
+
+    /** The type and all its supertypes declared in this table, nearest first. */
+    private List<TypeEntry> ancestors(TypeEntry type) {
+        if (type.ancestors == null) {
+            List<TypeEntry> ancestors = new ArrayList<>();
+            Set<TypeEntry> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            ancestors.add(type);
+            seen.add(type);
+            for (int i = 0; i < ancestors.size(); i++) {
+                TypeEntry current = ancestors.get(i);
+                for (String supertype : current.type.supertypes) {
+                    for (TypeEntry resolved : resolveType(current.file, supertype)) {
+                        if (seen.add(resolved)) {
+                            ancestors.add(resolved);
+                        }
+                    }
+                }
+            }
+            type.ancestors = ancestors;
+        }
+        return type.ancestors;
+    }
+
+    /** The directly enclosing type of {@code type} in the same file, if any. */
+    private List<TypeEntry> outer(FileEntry file, TypeEntry type) {
+        String name = type.type.qualifiedName;
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? Collections.emptyList() : file.types.getOrDefault(name.substring(0, dot), Collections.emptyList());
+    }
+
+    /**
+     * The declared type of field {@code name} as seen from the enclosing types, resolved in the
+     * file that declares the field; null if no such field is known.
+     */
+    private List<TypeEntry> fieldType(FileEntry file, List<TypeEntry> enclosing, String name) {
+        for (List<TypeEntry> level = enclosing; !level.isEmpty(); level = outer(file, level.get(0))) {
+            for (TypeEntry type : level) {
+                for (TypeEntry ancestor : ancestors(type)) {
+                    if (ancestor.type.fieldTypes.containsKey(name)) {
+                        String fieldType = ancestor.type.fieldTypes.get(name);
+                        return fieldType == null ? Collections.emptyList() : resolveType(ancestor.file, fieldType);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static final class FileEntry {
+        final String key;
+        final FileSymbols symbols;
+        final Map<String, List<TypeEntry>> types = new HashMap<>();
+        final Map<String, List<TypeEntry>> typesByName = new HashMap<>();
+        final Map<String, List<MethodSymbol>> methodsByName = new HashMap<>();
+        final Map<String, List<TypeEntry>> resolvedTypes = new HashMap<>();
+        final Map<String, List<Callee>> calls = new HashMap<>();
+
+        FileEntry(String key, FileSymbols symbols) {
+            this.key = key;
+            this.symbols = symbols;
+        }
+    }
+
+    private static final class TypeEntry {
+        final TypeSymbol type;
+        final FileEntry file;
+        final Map<String, List<MethodSymbol>> methods = new HashMap<>();
+        List<TypeEntry> ancestors;
+
+        TypeEntry(TypeSymbol type, FileEntry file) {
+            this.type = type;
+            this.file = file;
+        }
+    }
+}
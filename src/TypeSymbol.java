@@ -0,0 +1,22 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A declared class, interface, enum, record or annotation type, as call resolution sees it. */
+class TypeSymbol {
+    final String name;
+    /** Package and enclosing types, dot-separated: {@code pkg.Outer.Inner}. */
+    final String qualifiedName;
+    final int line;
+    /** Simple names of the extended and implemented types. */
+    final List<String> supertypes;
+    /** Simple type name of each field. */
+    final Map<String, String> fieldTypes = new HashMap<>();
+
+    TypeSymbol(String name, String qualifiedName, int line, List<String> supertypes) {
+        this.name = name;
+        this.qualifiedName = qualifiedName;
+        this.line = line;
+        this.supertypes = supertypes;
+    }
+}